@@ -0,0 +1,63 @@
+package xyz.johansson.reversi.model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the bitboard primitives under the search: move generation,
+ * flip computation and evaluation, over the positions of a Corpus.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitboardBenchmark {
+
+    private static final Evaluator EVALUATOR = new PatternEvaluator();
+
+    /**
+     * Legal moves of the player to move.
+     *
+     * @param c the corpus
+     * @return bitboard of the legal moves
+     */
+    @Benchmark
+    public long moves(Corpus c) {
+        int i = c.next();
+        return Bitboard.moves(c.own[i], c.opp[i]);
+    }
+
+    /**
+     * Tokens flipped by a legal move.
+     *
+     * @param c the corpus
+     * @return bitboard of the flipped tokens
+     */
+    @Benchmark
+    public long flips(Corpus c) {
+        int i = c.next();
+        return Bitboard.flips(c.own[i], c.opp[i], c.move[i]);
+    }
+
+    /**
+     * Pattern evaluation of the position.
+     *
+     * @param c the corpus
+     * @return the score
+     */
+    @Benchmark
+    public int evaluate(Corpus c) {
+        int i = c.next();
+        return EVALUATOR.evaluate(c.own[i], c.opp[i]);
+    }
+}
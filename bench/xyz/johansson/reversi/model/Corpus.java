@@ -0,0 +1,112 @@
+package xyz.johansson.reversi.model;
+
+import java.util.Random;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Fixed corpus of positions for the benchmarks, one stage of the game at a
+ * time. Each position is reached by seeded random play with Model.setBoard
+ * from the starting position, so that it is a Model with a move history as
+ * in a real game, and it has a legal move for the player to move.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+@State(Scope.Thread)
+public class Corpus {
+
+    /**
+     * Number of positions, a power of two.
+     */
+    static final int POSITIONS = 64;
+
+    /**
+     * Stage of the game: opening, midgame or endgame.
+     */
+    @Param({"opening", "midgame", "endgame"})
+    public String stage;
+
+    Model[] models; // the positions, the player to move has a legal move
+    long[] own; // bitboards of the player to move
+    long[] opp; // bitboards of the opponent
+    int[] move; // a legal move in each position
+    private int index;
+
+    /**
+     * Play the positions of the stage.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        int discs = discs(stage);
+        Random random = new Random(2015 + discs);
+        models = new Model[POSITIONS];
+        own = new long[POSITIONS];
+        opp = new long[POSITIONS];
+        move = new int[POSITIONS];
+        int n = 0;
+        while (n < POSITIONS) {
+            Model m = new Model();
+            m.newPvP();
+            while (!m.somebodyWon()
+                    && m.getWhitePoints() + m.getBlackPoints() < discs) {
+                int square = randomMove(m.getLegalMoves(), random);
+                m.setBoard(square / Model.COLS, square % Model.COLS);
+            }
+            if (!m.somebodyWon()
+                    && m.getWhitePoints() + m.getBlackPoints() == discs) {
+                models[n] = m;
+                own[n] = m.getWhitesTurn() ? m.getWhite() : m.getBlack();
+                opp[n] = m.getWhitesTurn() ? m.getBlack() : m.getWhite();
+                move[n] = randomMove(m.getLegalMoves(), random);
+                n++;
+            }
+        }
+    }
+
+    /**
+     * Return the index of the next position, round robin.
+     *
+     * @return position index
+     */
+    int next() {
+        index = (index + 1) & (POSITIONS - 1);
+        return index;
+    }
+
+    /**
+     * Return the number of discs on the board at a stage.
+     *
+     * @param stage opening, midgame or endgame
+     * @return number of discs
+     */
+    private static int discs(String stage) {
+        switch (stage) {
+            case "opening":
+                return 8;
+            case "midgame":
+                return 30;
+            case "endgame":
+                return 50;
+            default:
+                throw new IllegalArgumentException("Invalid stage: " + stage);
+        }
+    }
+
+    /**
+     * Return a random move.
+     *
+     * @param moves bitboard of moves, not 0
+     * @param random the Random
+     * @return square of a random move
+     */
+    private static int randomMove(long moves, Random random) {
+        for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+}
@@ -0,0 +1,89 @@
+package xyz.johansson.reversi.model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the move selection of the engines, as the computer player
+ * makes it: Engine.bestMove on a Model, with the opening book probe, the
+ * endgame solver and the search of the engine. The hash tables are cleared
+ * before each move, so that a position is not answered from an earlier
+ * operation. The Standard engine searches to depth 6 without a time budget.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+
+    /**
+     * Name of the engine, see Engines.
+     */
+    @Param({Engines.GREEDY, "Alpha-beta, depth 2", "Alpha-beta, depth 4",
+        Engines.STANDARD})
+    public String engineName;
+
+    private Engine engine;
+    private Model game; // settings and hash tables shared by the positions
+    private Model[] positions;
+    private Model model; // position of the next operation
+
+    /**
+     * Create the engine, and the positions of the corpus as engines see them
+     * while searching ahead: Models sharing the settings and hash tables of
+     * one game, so that the tables are allocated once.
+     *
+     * @param c the corpus
+     */
+    @Setup(Level.Trial)
+    public void setUp(Corpus c) {
+        engine = Engines.create(engineName);
+        game = new Model();
+        game.setSearchDepth(6);
+        game.setSearchTime(0);
+        positions = new Model[c.models.length];
+        for (int i = 0; i < positions.length; i++) {
+            Model m = c.models[i];
+            positions[i] = game.position(m.getWhite(), m.getBlack(),
+                    m.getWhitesTurn());
+        }
+    }
+
+    /**
+     * Take the next position and clear the hash tables.
+     *
+     * @param c the corpus
+     */
+    @Setup(Level.Invocation)
+    public void nextPosition(Corpus c) {
+        model = positions[c.next()];
+        game.getTranspositionTable().clear();
+        game.getEndgameTable().clear();
+    }
+
+    /**
+     * Engine.bestMove for the player to move.
+     *
+     * @return square of the move
+     */
+    @Benchmark
+    public int bestMove() {
+        return engine.bestMove(model, null);
+    }
+}
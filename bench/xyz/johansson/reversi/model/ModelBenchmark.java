@@ -0,0 +1,54 @@
+package xyz.johansson.reversi.model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the public move path of the Model, with the validation, pass
+ * handling, move history and notification of a real move. Each operation
+ * leaves the Model of the Corpus at the position it started from.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+    /**
+     * Model.setBoard of a legal move, then Model.undo back to the position.
+     *
+     * @param c the corpus
+     * @param bh sink of the results
+     */
+    @Benchmark
+    public void setBoardUndo(Corpus c, Blackhole bh) {
+        int i = c.next();
+        Model m = c.models[i];
+        bh.consume(m.setBoard(c.move[i] / Model.COLS, c.move[i] % Model.COLS));
+        bh.consume(m.undo());
+    }
+
+    /**
+     * Model.undo of the last move, then Model.redo back to the position.
+     *
+     * @param c the corpus
+     * @param bh sink of the results
+     */
+    @Benchmark
+    public void undoRedo(Corpus c, Blackhole bh) {
+        Model m = c.models[c.next()];
+        bh.consume(m.undo());
+        bh.consume(m.redo());
+    }
+}
@@ -0,0 +1,131 @@
+package xyz.johansson.reversi.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Thread scaling of the parallel search: time to a fixed depth, with no time
+ * or node budget, over the positions of a Corpus on 1, 2, 4 and 8 threads.
+ * The transposition table is cleared before each search, so every thread
+ * count searches the same positions from the same start. The score is
+ * searches per second, the reciprocal of the time to depth, and the nodes
+ * metric is the nodes searched per second.
+ * <p>
+ * The speedup of n threads is the score on n threads divided by the score on
+ * one; nodes/s rises with the threads even when the extra nodes of the
+ * parallel search do not pay off. Run on a machine with at least 8 cores:
+ * <pre>
+ * java -jar target/benchmarks.jar SearchScalingBenchmark -p stage=midgame
+ * </pre>
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchScalingBenchmark {
+
+    /**
+     * Number of search threads, 1 for the single-threaded search.
+     */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * Depth of each search in plies.
+     */
+    @Param({"8"})
+    public int depth;
+
+    private ForkJoinPool pool;
+    private TranspositionTable table;
+    private long own;
+    private long opp;
+    private boolean white;
+
+    /**
+     * Count of the nodes searched, per iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+
+        /**
+         * Nodes searched, reported per second.
+         */
+        public long nodes;
+
+        /**
+         * Reset the count.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    /**
+     * Create the pool and the table.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        table = new TranspositionTable(64);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Take the next position and clear the table.
+     *
+     * @param c the corpus
+     */
+    @Setup(Level.Invocation)
+    public void nextPosition(Corpus c) {
+        int i = c.next();
+        own = c.own[i];
+        opp = c.opp[i];
+        white = c.models[i].getWhitesTurn();
+        table.clear();
+    }
+
+    /**
+     * Search the position to the depth.
+     *
+     * @param n the node count
+     * @return square of the best move
+     */
+    @Benchmark
+    public int timeToDepth(Nodes n) {
+        Search search = new Search(depth, 0, 0, pool, table);
+        int move = search.bestMove(own, opp, white);
+        n.nodes += search.getNodes();
+        return move;
+    }
+}
@@ -0,0 +1,260 @@
+package xyz.johansson.reversi;
+
+import xyz.johansson.reversi.model.GameArchive;
+import xyz.johansson.reversi.model.Model;
+import xyz.johansson.reversi.model.OpeningBook;
+import xyz.johansson.reversi.model.PatternEvaluator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless self-play arena. Plays a number of computer vs computer games on a
+ * thread pool, without any window, and streams one line per game to a result
+ * file:
+ * <pre>
+ * game  white-points  black-points  moves  microseconds-per-move
+ * </pre>
+ * Moves are written as column letter and row number (a1 is the top left
+ * cell), and a pass as "--". Each game starts with a few random moves from a
+ * seeded Random so that the games differ but can be replayed.
+ * <p>
+ * Usage: java xyz.johansson.reversi.Arena [-games N] [-threads N] [-random N]
+ * [-seed N] [-white ENGINE] [-black ENGINE] [-book FILE] [-weights FILE]
+ * [-archive FILE] [-out FILE], where ENGINE is a comma separated list of
+ * depth=N, time=MS, nodes=N and endgame=N (empty cells from which the game is
+ * solved exactly). The opening book and the PatternEvaluator weight file are
+ * used by both players. With -archive the games are also appended to a
+ * GameArchive, e.g. as training data for the Tuner.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public class Arena {
+
+    private int games = 100;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int randomMoves = 4;
+    private long seed = 2015;
+    private long[] whiteEngine = parseEngine("depth=4");
+    private long[] blackEngine = parseEngine("depth=4");
+    private String out = "arena.txt";
+    private OpeningBook book;
+    private PatternEvaluator evaluator;
+    private String archive;
+
+    private final AtomicInteger whiteWins = new AtomicInteger();
+    private final AtomicInteger blackWins = new AtomicInteger();
+    private final AtomicInteger draws = new AtomicInteger();
+    private final AtomicLong whiteNanos = new AtomicLong();
+    private final AtomicLong blackNanos = new AtomicLong();
+    private final AtomicLong whiteMoves = new AtomicLong();
+    private final AtomicLong blackMoves = new AtomicLong();
+
+    /**
+     * Run the arena.
+     *
+     * @param args see the class documentation
+     * @throws java.lang.Exception if the result file cannot be written or a
+     * game fails
+     */
+    public static void main(String[] args) throws Exception {
+        Arena arena = new Arena();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "-games":
+                    arena.games = Integer.parseInt(value);
+                    break;
+                case "-threads":
+                    arena.threads = Integer.parseInt(value);
+                    break;
+                case "-random":
+                    arena.randomMoves = Integer.parseInt(value);
+                    break;
+                case "-seed":
+                    arena.seed = Long.parseLong(value);
+                    break;
+                case "-white":
+                    arena.whiteEngine = parseEngine(value);
+                    break;
+                case "-black":
+                    arena.blackEngine = parseEngine(value);
+                    break;
+                case "-book":
+                    arena.book = new OpeningBook(new File(value));
+                    break;
+                case "-weights":
+                    try (FileInputStream in = new FileInputStream(value)) {
+                        arena.evaluator = PatternEvaluator.read(in);
+                    }
+                    break;
+                case "-archive":
+                    arena.archive = value;
+                    break;
+                case "-out":
+                    arena.out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Invalid option: " + args[i]);
+            }
+        }
+        arena.run();
+    }
+
+    /**
+     * Play all games and print a summary.
+     *
+     * @throws java.lang.Exception if the result file cannot be written or a
+     * game fails
+     */
+    private void run() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try (final Writer writer = new BufferedWriter(new FileWriter(out));
+                final GameArchive.Writer archiveWriter = archive == null ? null
+                        : new GameArchive.Writer(new File(archive))) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < games; i++) {
+                final int game = i;
+                results.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        Model model = new Model();
+                        String line = play(game, model);
+                        synchronized (writer) {
+                            try {
+                                writer.write(line);
+                                writer.flush();
+                                if (archiveWriter != null) {
+                                    archiveWriter.append(model);
+                                }
+                            } catch (IOException ex) {
+                                throw new RuntimeException(ex);
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games in %.1f s, %.2f games/s%n", games, seconds,
+                games / seconds);
+        System.out.printf("White wins %d, black wins %d, draws %d%n",
+                whiteWins.get(), blackWins.get(), draws.get());
+        System.out.printf("Average ms/move: white %.2f, black %.2f%n",
+                whiteNanos.get() / 1e6 / Math.max(1, whiteMoves.get()),
+                blackNanos.get() / 1e6 / Math.max(1, blackMoves.get()));
+    }
+
+    /**
+     * Play one game.
+     *
+     * @param game game number, used for the seed of the random opening
+     * @param model the Model to play in
+     * @return result line for the game
+     */
+    private String play(int game, Model model) {
+        model.newPvP(); // both sides are driven from here
+        model.setOpeningBook(book);
+        if (evaluator != null) {
+            model.setEvaluator(evaluator);
+        }
+        Random random = new Random(seed + game);
+        StringBuilder moves = new StringBuilder();
+        StringBuilder times = new StringBuilder();
+        boolean lastWhite = false;
+
+        for (int ply = 0; !model.somebodyWon(); ply++) {
+            long legal = model.getLegalMoves();
+            boolean white = model.getWhitesTurn();
+            long start = System.nanoTime();
+            if (ply < randomMoves && legal != 0) {
+                // Random opening move
+                for (int k = random.nextInt(Long.bitCount(legal)); k > 0; k--) {
+                    legal &= legal - 1;
+                }
+                int move = Long.numberOfTrailingZeros(legal);
+                model.setBoard(move / Model.COLS, move % Model.COLS);
+            } else {
+                long[] engine = white ? whiteEngine : blackEngine;
+                model.setSearchDepth((int) engine[0]);
+                model.setSearchTime(engine[1]);
+                model.setSearchNodes(engine[2]);
+                model.setEndgameEmpties((int) engine[3]);
+                model.computerMove();
+            }
+            long nanos = System.nanoTime() - start;
+
+            if (ply >= randomMoves) {
+                (white ? whiteNanos : blackNanos).addAndGet(nanos);
+                (white ? whiteMoves : blackMoves).incrementAndGet();
+            }
+            if (ply > 0 && white == lastWhite) {
+                moves.append("--"); // the opponent passed
+            }
+            lastWhite = white;
+            int move = model.getLastMove();
+            moves.append((char) ('a' + move % Model.COLS))
+                    .append(move / Model.COLS + 1);
+            times.append(ply == 0 ? "" : ",").append(nanos / 1000);
+        }
+
+        int w = model.getWhitePoints();
+        int b = model.getBlackPoints();
+        (w > b ? whiteWins : w < b ? blackWins : draws).incrementAndGet();
+        return game + "\t" + w + "\t" + b + "\t" + moves + "\t" + times
+                + System.lineSeparator();
+    }
+
+    /**
+     * Parse an engine specification such as "depth=6,time=100".
+     *
+     * @param spec the specification
+     * @return depth, time, nodes and endgame
+     */
+    private static long[] parseEngine(String spec) {
+        long[] engine = {0, 0, 0, Model.DEFAULT_ENDGAME_EMPTIES};
+        for (String part : spec.split(",")) {
+            String[] keyValue = part.split("=");
+            long value = Long.parseLong(keyValue[1]);
+            switch (keyValue[0]) {
+                case "depth":
+                    engine[0] = value;
+                    break;
+                case "time":
+                    engine[1] = value;
+                    break;
+                case "nodes":
+                    engine[2] = value;
+                    break;
+                case "endgame":
+                    engine[3] = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Invalid engine option: " + keyValue[0]);
+            }
+        }
+        return engine;
+    }
+}
@@ -1,9 +1,13 @@
 package xyz.johansson.reversi;
 
 import xyz.johansson.reversi.model.Model;
+import xyz.johansson.reversi.model.OpeningBook;
+import xyz.johansson.reversi.model.PatternEvaluator;
 import xyz.johansson.reversi.view.View;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,20 +24,54 @@ public class MVCDriver {
 
     /**
      * Main method for the project; start Reversi. Create Model and View (View
-     * initiates Controller), add the View to a JFrame and add an Observer.
+     * initiates Controller), add the View to a JFrame and add it as a listener
+     * of the Model. The opening book is loaded from the file reversi.book and
+     * the evaluation weights from reversi.weights, if there are such files.
+     * With the option -canvas the board is painted by a single BoardCanvas
+     * component.
      *
-     * @param args not used
+     * @param args -canvas, optionally
      */
     public static void main(String[] args) {
+        boolean canvas = false;
+        for (String arg : args) {
+            switch (arg) {
+                case "-canvas":
+                    canvas = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Invalid option: " + arg);
+            }
+        }
+
         // Create Model and View
         Model model = new Model();
-        View view = new View(model); // view initiates Controller
+        File book = new File("reversi.book");
+        if (book.isFile()) {
+            try {
+                model.setOpeningBook(new OpeningBook(book));
+            } catch (IOException ex) {
+                Logger.getLogger(MVCDriver.class.getName()).log(
+                        Level.WARNING, null, ex);
+            }
+        }
+        File weights = new File("reversi.weights");
+        if (weights.isFile()) {
+            try (FileInputStream in = new FileInputStream(weights)) {
+                model.setEvaluator(PatternEvaluator.read(in));
+            } catch (IOException ex) {
+                Logger.getLogger(MVCDriver.class.getName()).log(
+                        Level.WARNING, null, ex);
+            }
+        }
+        View view = new View(model, canvas); // view initiates Controller
 
         // Create a JFrame and add the View
         createJFrame(view);
 
-        // Add Observer
-        model.addObserver(view);
+        // Add the View as a listener, on the event dispatch thread
+        model.addListener(view, View.EVENT_DISPATCH);
     }
 
     /**
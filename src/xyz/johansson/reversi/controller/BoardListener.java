@@ -15,6 +15,8 @@ public class BoardListener implements ActionListener {
 
     private Model model;
     private View view;
+    private ComputerMoveWorker worker; // the latest computer move
+    private PonderWorker ponderWorker; // pondering on the player's time
 
     /**
      * Construct a BoardListener.
@@ -29,19 +31,65 @@ public class BoardListener implements ActionListener {
 
     /**
      * Inovked when a cell on the board is clicked. Try to set the cell in the
-     * Model. If player move are succeeded and if PvC is ongoing, after make a
-     * computer move. The event is expected to have the following ActionCommand
-     * (row * Model.COLS + col) for identification of clicked cell.
+     * Model. If player move are succeeded and if PvC is ongoing, after start a
+     * computer move in the background unless the computer has to pass, in
+     * which case the computer ponders again. The event is expected to have
+     * the following ActionCommand (row * size + col), size being the size of
+     * the board of the Model, for identification of clicked cell.
      *
      * @param e triggering ActionEvent
      */
     @Override
     public void actionPerformed(ActionEvent e) {
         int position = Integer.valueOf(e.getActionCommand());
-        int row = position / Model.COLS;
-        int col = position % Model.COLS;
+        int row = position / model.getSize();
+        int col = position % model.getSize();
         if (model.setBoard(row, col) && !model.getPvP()) {
-            model.computerMove(); // if player set is succeded and PvC ongoing
+            if (!model.getWhitesTurn() && !model.somebodyWon()) {
+                startComputerMove(); // player move succeeded, PvC ongoing
+            } else {
+                cancelPondering(); // the game is over or the computer passed
+                startPondering();
+            }
         }
     }
+
+    /**
+     * Start a computer move in the background. The board is locked until the
+     * move is made. The computer move takes over any pondering.
+     */
+    void startComputerMove() {
+        ponderWorker = null;
+        worker = new ComputerMoveWorker(model, view, this);
+        worker.execute();
+    }
+
+    /**
+     * Cancel an ongoing computer move or pondering, if any.
+     */
+    void cancelComputerMove() {
+        if (worker != null && !worker.isDone()) {
+            worker.cancelMove();
+        }
+        worker = null;
+        cancelPondering();
+    }
+
+    /**
+     * Start pondering in the background while the player decides.
+     */
+    void startPondering() {
+        ponderWorker = new PonderWorker(model);
+        ponderWorker.execute();
+    }
+
+    /**
+     * Stop pondering, if any, without waiting for the pondering search.
+     */
+    void cancelPondering() {
+        if (ponderWorker != null) {
+            ponderWorker.cancelPonder();
+        }
+        ponderWorker = null;
+    }
 }
@@ -0,0 +1,140 @@
+package xyz.johansson.reversi.controller;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingWorker;
+import xyz.johansson.reversi.model.Engine;
+import xyz.johansson.reversi.model.Model;
+import xyz.johansson.reversi.model.SearchListener;
+import xyz.johansson.reversi.view.View;
+
+/**
+ * Background worker for a computer move. The search runs on a worker thread
+ * while the board is locked, the search depth is published to the View as
+ * progress and the move is made on the event dispatch thread.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+class ComputerMoveWorker extends SwingWorker<Integer, Integer> {
+
+    private Model model;
+    private View view;
+    private BoardListener boardListener;
+    private final Engine engine; // of its own, stopped when cancelled
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CountDownLatch returned = new CountDownLatch(1);
+
+    /**
+     * Construct a ComputerMoveWorker and lock the board. Must be constructed
+     * on the event dispatch thread.
+     *
+     * @param m the Model
+     * @param v the View
+     * @param b the BoardListener, which ponders after the move or starts the
+     * next computer move if the player has to pass
+     */
+    ComputerMoveWorker(Model m, View v, BoardListener b) {
+        this.model = m;
+        this.view = v;
+        this.boardListener = b;
+        this.engine = m.createEngine();
+        model.setComputerThinking(true);
+    }
+
+    /**
+     * Search for the computer move, publishing the depth of each completed
+     * iteration.
+     *
+     * @return the move as (row * size + col), -1 if there is no legal
+     * move
+     */
+    @Override
+    protected Integer doInBackground() {
+        if (!started.compareAndSet(false, true)) {
+            return -1; // cancelled before the search started
+        }
+        try {
+            return model.findComputerMove(engine, new SearchListener() {
+                @Override
+                public void iterationFinished(int depth, int row, int col,
+                        long nodes) {
+                    publish(depth);
+                }
+            });
+        } finally {
+            returned.countDown();
+        }
+    }
+
+    /**
+     * Show the latest search depth in the View.
+     *
+     * @param depths published search depths
+     */
+    @Override
+    protected void process(List<Integer> depths) {
+        if (!isCancelled()) {
+            view.showComputerProgress(depths.get(depths.size() - 1));
+        }
+    }
+
+    /**
+     * Unlock the board and make the computer move, unless cancelled, and
+     * show its cost in the View. Ponder while the player decides, or if the
+     * player has to pass, start the next computer move.
+     */
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        model.setComputerThinking(false);
+        try {
+            int position = get();
+            if (position >= 0 && model.setBoard(position / model.getSize(),
+                    position % model.getSize()) && !model.somebodyWon()) {
+                if (model.getWhitesTurn()) {
+                    view.showComputerStatistics(model.getComputerNodes(),
+                            model.getComputerTime());
+                    boardListener.startPondering();
+                } else {
+                    boardListener.startComputerMove(); // the player passed
+                }
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            Logger.getLogger(
+                    Controller.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Cancel the computer move. The search is stopped, its result is discarded
+     * and the board is unlocked once the search has returned, so that the
+     * Model is not changed under it. A stopped search returns within
+     * milliseconds.
+     */
+    void cancelMove() {
+        cancel(false);
+        engine.stop();
+        if (!started.compareAndSet(false, true)) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    returned.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        model.setComputerThinking(false);
+    }
+}
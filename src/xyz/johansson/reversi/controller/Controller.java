@@ -26,7 +26,7 @@ public class Controller {
         this.model = m;
         this.view = v;
         boardListener = new BoardListener(model, view);
-        menuListener = new MenuListener(model, view);
+        menuListener = new MenuListener(model, view, boardListener);
     }
 
     //--------------------------------------------------------------------------
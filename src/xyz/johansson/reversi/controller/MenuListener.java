@@ -7,13 +7,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.swing.AbstractButton;
 import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import xyz.johansson.reversi.model.Engines;
+import xyz.johansson.reversi.model.GameFormat;
 import xyz.johansson.reversi.model.Model;
 import xyz.johansson.reversi.view.View;
 
@@ -27,16 +28,21 @@ public class MenuListener implements ActionListener {
 
     private Model model;
     private View view;
+    private BoardListener boardListener;
+    private int boardSize = Model.ROWS; // of the next new game
 
     /**
      * Construct a MenuListener.
      *
      * @param m the Model
      * @param v the View
+     * @param b the BoardListener, whose computer move is cancelled when the
+     * game is replaced
      */
-    MenuListener(Model m, View v) {
+    MenuListener(Model m, View v, BoardListener b) {
         this.model = m;
         this.view = v;
+        this.boardListener = b;
     }
 
     /**
@@ -61,6 +67,21 @@ public class MenuListener implements ActionListener {
             case "open":
                 open();
                 break;
+            case "undo":
+                undo();
+                break;
+            case "redo":
+                redo();
+                break;
+            case "engine":
+                selectEngine(((AbstractButton) e.getSource()).getText());
+                break;
+            case "ponder":
+                setPonder(((AbstractButton) e.getSource()).isSelected());
+                break;
+            case "size":
+                setBoardSize(((AbstractButton) e.getSource()).getText());
+                break;
             case "exit":
                 System.exit(0);
                 break;
@@ -80,7 +101,8 @@ public class MenuListener implements ActionListener {
         String msg = "Good luck!";
         JOptionPane.showMessageDialog(view, msg,
                 "Player vs. Player", JOptionPane.PLAIN_MESSAGE);
-        model.newPvP();
+        boardListener.cancelComputerMove();
+        model.newPvP(boardSize);
     }
 
     /**
@@ -91,7 +113,8 @@ public class MenuListener implements ActionListener {
                 + "Computer is black.\n\nGood luck!";
         JOptionPane.showMessageDialog(view, msg, "Player vs. Computer",
                 JOptionPane.PLAIN_MESSAGE);
-        model.newPvC();
+        boardListener.cancelComputerMove();
+        model.newPvC(boardSize);
     }
 
     /**
@@ -111,10 +134,8 @@ public class MenuListener implements ActionListener {
                 if (!path.toLowerCase().endsWith(".data")) {
                     path += ".data";
                 }
-                try {
-                    ObjectOutputStream output = new ObjectOutputStream(
-                            new FileOutputStream(path));
-                    output.writeObject(model.getPrivateDataField());
+                try (FileOutputStream output = new FileOutputStream(path)) {
+                    GameFormat.write(model, output);
                 } catch (IOException ex) {
                     Logger.getLogger(
                             Controller.class.getName()).log(
@@ -135,11 +156,16 @@ public class MenuListener implements ActionListener {
         int returnVal = chooser.showOpenDialog(view);
         if (returnVal == JFileChooser.APPROVE_OPTION) {
             String path = chooser.getSelectedFile().getPath();
-            try {
-                ObjectInputStream input = new ObjectInputStream(
-                        new FileInputStream(path));
-                model.setPrivateDataField((Object[]) input.readObject());
-            } catch (IOException | ClassNotFoundException ex) {
+            try (FileInputStream input = new FileInputStream(path)) {
+                boardListener.cancelComputerMove();
+                GameFormat.read(input, model);
+
+                // A session saved while the computer was thinking
+                if (!model.getPvP() && !model.getWhitesTurn()
+                        && !model.somebodyWon()) {
+                    boardListener.startComputerMove();
+                }
+            } catch (IOException ex) {
                 Logger.getLogger(
                         Controller.class.getName()).log(Level.SEVERE, null, ex);
                 JOptionPane.showMessageDialog(view, "Unable to read file."
@@ -149,6 +175,68 @@ public class MenuListener implements ActionListener {
         }
     }
 
+    /**
+     * Take back the last move. Against the computer, moves are taken back until
+     * it is the players turn.
+     */
+    private void undo() {
+        boardListener.cancelComputerMove();
+        while (model.undo() && !model.getPvP() && !model.getWhitesTurn()) {
+            // take back the computer move as well
+        }
+    }
+
+    /**
+     * Make a taken back move again. Against the computer, moves are made again
+     * until it is the players turn, or the computer moves if the history ends.
+     */
+    private void redo() {
+        boardListener.cancelComputerMove();
+        while (model.redo() && !model.getPvP() && !model.getWhitesTurn()) {
+            // make the computer move as well
+        }
+        if (!model.getPvP() && !model.getWhitesTurn() && !model.somebodyWon()) {
+            boardListener.startComputerMove();
+        }
+    }
+
+    /**
+     * Let the computer play with another engine. A computer move in progress
+     * is started again with the new engine.
+     *
+     * @param name name of the engine, see Engines
+     */
+    private void selectEngine(String name) {
+        boolean thinking = model.getComputerThinking();
+        boardListener.cancelComputerMove();
+        model.setEngine(Engines.create(name));
+        if (thinking) {
+            boardListener.startComputerMove();
+        }
+    }
+
+    /**
+     * Let the computer ponder on the player's time, or not.
+     *
+     * @param enabled true to ponder
+     */
+    private void setPonder(boolean enabled) {
+        boardListener.cancelPondering();
+        model.setPonderEnabled(enabled);
+        if (enabled) {
+            boardListener.startPondering();
+        }
+    }
+
+    /**
+     * Set the size of the board of the next new game.
+     *
+     * @param text text of the menu item, e.g. "10x10"
+     */
+    private void setBoardSize(String text) {
+        boardSize = Integer.parseInt(text.substring(0, text.indexOf('x')));
+    }
+
     /**
      * Gives information about the game in a popup box.
      */
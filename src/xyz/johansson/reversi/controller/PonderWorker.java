@@ -0,0 +1,53 @@
+package xyz.johansson.reversi.controller;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingWorker;
+import xyz.johansson.reversi.model.Model;
+import xyz.johansson.reversi.model.ModelSnapshot;
+
+/**
+ * Background worker for pondering: while the player decides, the computer
+ * searches for its answers to the likely moves of the player, see
+ * Model.ponder. The next computer move takes over the pondering.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+class PonderWorker extends SwingWorker<Void, Void> {
+
+    private Model model;
+    private ModelSnapshot position; // taken on the event dispatch thread
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    /**
+     * Construct a PonderWorker for the current board state of the Model. Must
+     * be called on the event dispatch thread.
+     *
+     * @param m the Model
+     */
+    PonderWorker(Model m) {
+        this.model = m;
+        this.position = m.getSnapshot();
+    }
+
+    /**
+     * Ponder until stopped or done.
+     *
+     * @return null
+     */
+    @Override
+    protected Void doInBackground() {
+        model.ponder(position, cancelled);
+        return null;
+    }
+
+    /**
+     * Stop pondering and discard what was found, also if pondering has not
+     * started yet. Does not wait for the pondering search to return.
+     */
+    void cancelPonder() {
+        cancelled.set(true);
+        cancel(false);
+        model.stopPondering();
+    }
+}
@@ -1,88 +1,177 @@
 package xyz.johansson.reversi.model;
 
-import java.util.ArrayList;
-import java.util.TreeMap;
-
 /**
- * Artificial intelligence (AI).
+ * Artificial intelligence (AI); the search engines. A move is taken from the
+ * opening book of the Model, if any, and is otherwise the best move found by
+ * an alpha-beta search, in parallel if the Model has a search pool. Near the
+ * end of the game the move may be solved exactly instead. The search limits
+ * are either those of the Model or fixed by the engine. On a board of another
+ * size than Model.ROWS x COLS the move is found by a WideSearch within the
+ * same limits.
  *
  * @author Tobias Johansson
  * @version 1.03, 3 Mar 2015
  */
-class AI {
+class AI implements Engine {
 
-    private Model model;
+    private final String name;
+    private final boolean modelLimits;
+    private final int depth;
+    private final long millis;
+    private final int endgameEmpties;
+    private volatile Search currentSearch;
+    private volatile WideSearch currentWideSearch;
+    private volatile boolean stopped; // for good, see stop
+    private volatile long nodes;
+    private volatile long time;
 
     /**
-     * Constructs an AI.
+     * Constructs an AI searching within the search limits and endgame
+     * threshold of the Model.
      *
-     * @param m the Model
+     * @param name the name of the engine
      */
-    AI(Model m) {
-        this.model = m;
+    AI(String name) {
+        this.name = name;
+        this.modelLimits = true;
+        this.depth = 0;
+        this.millis = 0;
+        this.endgameEmpties = 0;
     }
 
     /**
-     * Make the move that generates the most point.
+     * Constructs an AI with fixed search limits. A limit of zero or less is
+     * unlimited.
+     *
+     * @param name the name of the engine
+     * @param depth maximum search depth in plies
+     * @param millis time budget in milliseconds
+     * @param endgameEmpties number of empty cells from which the game is
+     * solved exactly, zero or less for never
      */
-    void move() {
-        // Key: points, Value: Index
-        TreeMap<Integer, Index> moves = new TreeMap();
+    AI(String name, int depth, long millis, int endgameEmpties) {
+        this.name = name;
+        this.modelLimits = false;
+        this.depth = depth;
+        this.millis = millis;
+        this.endgameEmpties = endgameEmpties;
+    }
 
-        // Check points for all possible moves and add them to the TreeMap
-        for (int i = 0; i < Model.ROWS; i++) {
-            for (int j = 0; j < Model.COLS; j++) {
-                if (model.getBoard(i, j) == Model.EMPTY) {
-                    // Check points for specific move and put it in a TreeMap
-                    Index index = new Index(i, j);
-                    moves.put(points(index, Model.BLACK), index);
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int bestMove(Model model, SearchListener listener) {
+        long start = System.nanoTime();
+        nodes = 0;
+        try {
+            Geometry geometry = model.getGeometry();
+            if (geometry != null) {
+                return wideBestMove(model, geometry, listener);
+            }
+            long own, opp;
+            if (model.getWhitesTurn()) {
+                own = model.getWhite();
+                opp = model.getBlack();
+            } else {
+                own = model.getBlack();
+                opp = model.getWhite();
+            }
+            OpeningBook book = model.getOpeningBook();
+            if (book != null) {
+                int move = book.probe(model.getWhite(), model.getBlack(),
+                        model.getWhitesTurn());
+                if (move >= 0
+                        && (Bitboard.moves(own, opp) & (1L << move)) != 0) {
+                    return move; // not a hash collision
+                }
+            }
+            if (stopped) {
+                long moves = Bitboard.moves(own, opp);
+                return moves == 0 ? -1 : Long.numberOfTrailingZeros(moves);
+            }
+            Search search = modelLimits
+                    ? new Search(model.getSearchDepth(), model.getSearchTime(),
+                            model.getSearchNodes(), model.getSearchPool(),
+                            model.getTranspositionTable())
+                    : new Search(depth, millis, 0, model.getSearchPool(),
+                            model.getTranspositionTable());
+            search.setListener(listener);
+            search.setEvaluator(model.getEvaluator());
+            int empties = modelLimits ? model.getEndgameEmpties()
+                    : endgameEmpties;
+            if (empties > 0) {
+                search.setEndgame(new Endgame(model.getEndgameTable()),
+                        empties);
+            }
+            currentSearch = search;
+            try {
+                // A stop before currentSearch was set did not reach it
+                if (stopped) {
+                    search.stop();
                 }
+                return search.bestMove(own, opp, model.getWhitesTurn());
+            } finally {
+                currentSearch = null;
+                nodes = search.getNodes();
             }
+        } finally {
+            time = (System.nanoTime() - start) / 1000000;
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        Search search = currentSearch;
+        if (search != null) {
+            search.stop();
+        }
+        WideSearch wideSearch = currentWideSearch;
+        if (wideSearch != null) {
+            wideSearch.stop();
         }
+    }
 
-        // Retrive a move that gives the highest points.
-        // lastKey(): Returns the last (highest) key currently in this map
-        Index move = moves.get(moves.lastKey());
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
 
-        // Make the move
-        model.setBoard(move.getRow(), move.getCol());
+    @Override
+    public long getTime() {
+        return time;
     }
 
     /**
-     * Return points after placement on specified Index.
+     * Return the best move on a board of another size than Model.ROWS x COLS.
      *
-     * @param i Index
-     * @param color color of token
-     * @return points after placement on i for color
+     * @param model the Model
+     * @param geometry the Geometry of the board of the Model
+     * @param listener listener for search progress, or null
+     * @return square (row * size + col) of the move, -1 if there is no legal
+     * move
      */
-    private int points(Index i, int color) {
-        // Retrive a list of tokens that should be flipped if a move to the
-        // specified index
-        ArrayList<Index> flipList = model.flipList(i, color);
-
-        // Clone the original board
-        int[][] boardClone = new int[Model.ROWS][Model.COLS];
-        for (int row = 0; row < Model.ROWS; row++) {
-            for (int col = 0; col < Model.COLS; col++) {
-                // Works because int is a primitive data type, not an object
-                boardClone[row][col] = model.getBoard(row, col);
-            }
-        }
-
-        // Flip tokens on the clone
-        for (Index flip : flipList) {
-            boardClone[flip.getRow()][flip.getCol()] = color;
-        }
-
-        // Calculate and return points
-        int points = 0;
-        for (int row = 0; row < Model.ROWS; row++) {
-            for (int col = 0; col < Model.COLS; col++) {
-                if (boardClone[row][col] == color) {
-                    points++;
-                }
+    private int wideBestMove(Model model, Geometry geometry,
+            SearchListener listener) {
+        WideSearch search = modelLimits
+                ? new WideSearch(geometry, model.getSearchDepth(),
+                        model.getSearchTime(), model.getSearchNodes())
+                : new WideSearch(geometry, depth, millis, 0);
+        search.setListener(listener);
+        long[] white = model.getWideWhite(), black = model.getWideBlack();
+        currentWideSearch = search;
+        try {
+            if (stopped) {
+                search.stop();
             }
+            return model.getWhitesTurn() ? search.bestMove(white, black)
+                    : search.bestMove(black, white);
+        } finally {
+            currentWideSearch = null;
+            nodes = search.getNodes();
         }
-        return points;
     }
 }
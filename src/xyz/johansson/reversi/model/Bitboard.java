@@ -0,0 +1,129 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Bitboard helpers. A board is represented by two longs, one per color, where
+ * bit (row * Model.COLS + col) is set if the cell holds a token of that color.
+ * Move generation and flips are computed with shift-and-mask operations in all
+ * eight directions.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+final class Bitboard {
+
+    /**
+     * Cells in the first column (col 0).
+     */
+    static final long FILE_A = 0x0101010101010101L;
+
+    /**
+     * Cells in the last column (col 7).
+     */
+    static final long FILE_H = 0x8080808080808080L;
+
+    /**
+     * Bitboard of the white tokens in the starting position.
+     */
+    static final long START_WHITE = bit(3, 3) | bit(4, 4);
+
+    /**
+     * Bitboard of the black tokens in the starting position.
+     */
+    static final long START_BLACK = bit(3, 4) | bit(4, 3);
+
+    private Bitboard() {
+    }
+
+    /**
+     * Return the bit for a cell.
+     *
+     * @param row row
+     * @param col column
+     * @return the bit representing the cell
+     */
+    static long bit(int row, int col) {
+        return 1L << (row * Model.COLS + col);
+    }
+
+    /**
+     * Shift all cells one step in a direction, dropping the cells that would
+     * wrap around the board. Directions are numbered as in Model.Direction:
+     * UP_LEFT, UP, UP_RIGHT, RIGHT, DOWN_RIGHT, DOWN, DOWN_LEFT, LEFT.
+     *
+     * @param b bitboard
+     * @param dir direction, 0 to 7
+     * @return b shifted one step in dir
+     */
+    static long shift(long b, int dir) {
+        switch (dir) {
+            case 0: // UP_LEFT
+                return (b >>> 9) & ~FILE_H;
+            case 1: // UP
+                return b >>> 8;
+            case 2: // UP_RIGHT
+                return (b >>> 7) & ~FILE_A;
+            case 3: // RIGHT
+                return (b << 1) & ~FILE_A;
+            case 4: // DOWN_RIGHT
+                return (b << 9) & ~FILE_A;
+            case 5: // DOWN
+                return b << 8;
+            case 6: // DOWN_LEFT
+                return (b << 7) & ~FILE_H;
+            case 7: // LEFT
+                return (b >>> 1) & ~FILE_H;
+            default:
+                throw new IllegalArgumentException("Invalid direction: " + dir);
+        }
+    }
+
+    /**
+     * Return the legal moves for the player owning own, i.e. every empty cell
+     * from which at least one opponent token would be flipped.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @return bitboard of the legal moves
+     */
+    static long moves(long own, long opp) {
+        long empty = ~(own | opp);
+        long moves = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            // Opponent runs adjacent to own tokens, at most six cells long
+            long run = shift(own, dir) & opp;
+            run |= shift(run, dir) & opp;
+            run |= shift(run, dir) & opp;
+            run |= shift(run, dir) & opp;
+            run |= shift(run, dir) & opp;
+            run |= shift(run, dir) & opp;
+            moves |= shift(run, dir) & empty;
+        }
+        return moves;
+    }
+
+    /**
+     * Return the tokens that should be flipped if the player owning own places
+     * a token on square.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param square square (row * Model.COLS + col) of the placed token
+     * @return bitboard of the tokens to flip, 0 if nothing is flipped
+     */
+    static long flips(long own, long opp, int square) {
+        long placed = 1L << square;
+        long flips = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            long run = 0;
+            long next = shift(placed, dir);
+            while ((next & opp) != 0) {
+                run |= next;
+                next = shift(next, dir);
+            }
+            if ((next & own) != 0) {
+                flips |= run;
+            }
+        }
+        return flips;
+    }
+}
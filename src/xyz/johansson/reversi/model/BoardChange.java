@@ -0,0 +1,157 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Change of the board, published by Model with each ModelSnapshot. The
+ * changed cells are kept as a bitset, square (row * size + col) being bit
+ * (square % 64) of word (square / 64), so a listener visits the changed cells
+ * with nextCell and the cost of an update follows the number of flipped
+ * tokens rather than the size of the board. Immutable.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class BoardChange {
+
+    /**
+     * Change of a notification that does not change the board, e.g. when the
+     * computer starts thinking.
+     */
+    public static final BoardChange NONE = new BoardChange(-1, new long[1],
+            new long[1], 0, 0);
+
+    private final int placed;
+    private final long[] flipped;
+    private final long[] cells;
+    private final int whiteDelta;
+    private final int blackDelta;
+
+    /**
+     * Construct a BoardChange.
+     *
+     * @param placed square of the placed token, -1 if none
+     * @param flipped bitset of the tokens that changed color
+     * @param cells bitset of all changed cells
+     * @param whiteDelta change of the white points
+     * @param blackDelta change of the black points
+     */
+    BoardChange(int placed, long[] flipped, long[] cells, int whiteDelta,
+            int blackDelta) {
+        this.placed = placed;
+        this.flipped = flipped;
+        this.cells = cells;
+        this.whiteDelta = whiteDelta;
+        this.blackDelta = blackDelta;
+    }
+
+    /**
+     * Return the change between two board states.
+     *
+     * @param oldWhite bitboard of the white tokens before
+     * @param oldBlack bitboard of the black tokens before
+     * @param white bitboard of the white tokens after
+     * @param black bitboard of the black tokens after
+     * @return the change, NONE if the board states are equal
+     */
+    static BoardChange between(long oldWhite, long oldBlack, long white,
+            long black) {
+        long cells = (oldWhite ^ white) | (oldBlack ^ black);
+        if (cells == 0) {
+            return NONE;
+        }
+        long added = (white | black) & ~(oldWhite | oldBlack);
+        int placed = Long.bitCount(added) == 1
+                ? Long.numberOfTrailingZeros(added) : -1;
+        return new BoardChange(placed,
+                new long[]{(oldWhite & black) | (oldBlack & white)},
+                new long[]{cells},
+                Long.bitCount(white) - Long.bitCount(oldWhite),
+                Long.bitCount(black) - Long.bitCount(oldBlack));
+    }
+
+    /**
+     * Return the change between two board states of the same size, given as
+     * bitsets.
+     *
+     * @param oldWhite bitset of the white tokens before
+     * @param oldBlack bitset of the black tokens before
+     * @param white bitset of the white tokens after
+     * @param black bitset of the black tokens after
+     * @return the change, NONE if the board states are equal
+     */
+    static BoardChange between(long[] oldWhite, long[] oldBlack, long[] white,
+            long[] black) {
+        int words = white.length;
+        long[] cells = new long[words];
+        long[] flipped = new long[words];
+        long any = 0;
+        int added = 0, placed = -1;
+        for (int w = 0; w < words; w++) {
+            cells[w] = (oldWhite[w] ^ white[w]) | (oldBlack[w] ^ black[w]);
+            flipped[w] = (oldWhite[w] & black[w]) | (oldBlack[w] & white[w]);
+            any |= cells[w];
+            long add = (white[w] | black[w]) & ~(oldWhite[w] | oldBlack[w]);
+            if (add != 0) {
+                added += Long.bitCount(add);
+                placed = (w << 6) + Long.numberOfTrailingZeros(add);
+            }
+        }
+        if (any == 0) {
+            return NONE;
+        }
+        return new BoardChange(added == 1 ? placed : -1, flipped, cells,
+                Geometry.count(white) - Geometry.count(oldWhite),
+                Geometry.count(black) - Geometry.count(oldBlack));
+    }
+
+    /**
+     * Get the cell of the token placed by a move.
+     *
+     * @return square (row * size + col), -1 if no single token was
+     * placed, e.g. for an undo or a new game
+     */
+    public int getPlaced() {
+        return placed;
+    }
+
+    /**
+     * Check if a token changed color, by a move or an undo.
+     *
+     * @param square square (row * size + col) of the cell
+     * @return true if the token of the cell was flipped
+     */
+    public boolean isFlipped(int square) {
+        return square >>> 6 < flipped.length
+                && (flipped[square >>> 6] & (1L << square)) != 0;
+    }
+
+    /**
+     * Return the next changed cell: a placed, flipped or removed token. The
+     * changed cells are visited with
+     * {@code for (int sq = c.nextCell(0); sq >= 0; sq = c.nextCell(sq + 1))}.
+     *
+     * @param from first square to look at
+     * @return square (row * size + col) of the changed cell, -1 if none is
+     * left
+     */
+    public int nextCell(int from) {
+        return Geometry.next(cells, from);
+    }
+
+    /**
+     * Get the change of the white points.
+     *
+     * @return points after minus points before
+     */
+    public int getWhiteDelta() {
+        return whiteDelta;
+    }
+
+    /**
+     * Get the change of the black points.
+     *
+     * @return points after minus points before
+     */
+    public int getBlackDelta() {
+        return blackDelta;
+    }
+}
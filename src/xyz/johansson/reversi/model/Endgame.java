@@ -0,0 +1,382 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Exact endgame solver. Searches to the end of the game with alpha-beta
+ * pruning on the final disc difference, which is cheap enough once about 20 or
+ * fewer cells are empty. Empty cells left at the end of a game count for the
+ * winner.
+ * <p>
+ * Moves are ordered by parity: the board is split into quadrants, and a move
+ * into a quadrant with an odd number of empty cells goes first, since the last
+ * move in a region tends to go to the player who moves there first. With many
+ * empty cells, moves within the same parity go fastest first, i.e. the move
+ * leaving the opponent the fewest replies. The last few empty cells are solved
+ * by a separate path that tries the empty cells directly instead of generating
+ * moves, and without the hash table.
+ * <p>
+ * Solved positions are stored in a TranspositionTable of their own, where the
+ * depth of an entry is the number of empty cells. Exact results stay valid
+ * between moves and games, so the table is never cleared.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+final class Endgame {
+
+    /**
+     * Memory cap of the hash table of the solver, in megabytes.
+     */
+    static final int HASH_SIZE = 4;
+
+    /**
+     * Maximum number of empty cells the solver accepts.
+     */
+    static final int MAX_EMPTIES = 32;
+
+    /**
+     * Up to this many empty cells, the last empties path is used.
+     */
+    private static final int LAST_EMPTIES = 4;
+
+    /**
+     * From this many empty cells, moves are ordered fastest first.
+     */
+    private static final int FASTEST_FIRST_EMPTIES = 6;
+
+    private static final long[] QUADRANTS = {
+        0x000000000F0F0F0FL,
+        0x00000000F0F0F0F0L,
+        0x0F0F0F0F00000000L,
+        0xF0F0F0F000000000L
+    };
+
+    private final TranspositionTable table;
+    private final int[][] moveBuffer = new int[MAX_EMPTIES + 1][MAX_EMPTIES];
+    private final int[][] keyBuffer = new int[MAX_EMPTIES + 1][MAX_EMPTIES];
+    private volatile boolean stopped;
+    private long nodes;
+    private int score;
+
+    /**
+     * Construct an Endgame solver.
+     *
+     * @param table hash table of the solver, not shared with a Search
+     */
+    Endgame(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Return the move with the best final disc difference for the player
+     * owning own. The position must have at most MAX_EMPTIES empty cells.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param white true if white is to move
+     * @return square (row * Model.COLS + col) of the best move, -1 if there is
+     * no legal move
+     */
+    int bestMove(long own, long opp, boolean white) {
+        int empties = Long.bitCount(~(own | opp));
+        if (empties > MAX_EMPTIES) {
+            throw new IllegalArgumentException("Too many empties: " + empties);
+        }
+        long moves = Bitboard.moves(own, opp);
+        if (moves == 0) {
+            return -1;
+        }
+        table.newSearch();
+        long hash = white ? Zobrist.hash(own, opp, true)
+                : Zobrist.hash(opp, own, false);
+
+        // A best move from an earlier solve goes first
+        long entry = table.probe(hash);
+        int first = entry != 0 ? TranspositionTable.move(entry)
+                : TranspositionTable.NO_MOVE;
+        int count = order(own, opp, moves, first, empties);
+        int[] ordered = moveBuffer[empties];
+        int best = ordered[0];
+        int alpha = -Model.ROWS * Model.COLS - 1;
+        for (int i = 0; i < count && !stopped; i++) {
+            int move = ordered[i];
+            long flips = Bitboard.flips(own, opp, move);
+            long nextOwn = opp & ~flips;
+            long nextOpp = own | flips | (1L << move);
+            long nextHash = Zobrist.afterMove(hash, white, move, flips);
+            int s = i == 0 ? alpha + 1 : -solve(nextOwn, nextOpp, nextHash,
+                    !white, empties - 1, -alpha - 1, -alpha, false);
+            if (s > alpha) {
+                s = -solve(nextOwn, nextOpp, nextHash, !white, empties - 1,
+                        -Model.ROWS * Model.COLS - 1, -alpha, false);
+            }
+            if (stopped) {
+                break;
+            }
+            if (s > alpha) {
+                alpha = s;
+                best = move;
+            }
+        }
+        score = alpha;
+        return best;
+    }
+
+    /**
+     * Stop the solver. bestMove returns the best move found so far.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Get the number of nodes searched.
+     *
+     * @return nodes searched
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the final disc difference of the best move, from the point of view
+     * of the player to move. Only exact if the solver was not stopped.
+     *
+     * @return disc difference
+     */
+    int getScore() {
+        return score;
+    }
+
+    /**
+     * Negamax search to the end of the game with a hash table.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param hash Zobrist hash of the position
+     * @param white true if white is to move
+     * @param empties number of empty cells
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @param passed true if the opponent passed to get here
+     * @return final disc difference from the point of view of the player to
+     * move
+     */
+    private int solve(long own, long opp, long hash, boolean white,
+            int empties, int alpha, int beta, boolean passed) {
+        if (empties <= LAST_EMPTIES) {
+            return lastEmpties(own, opp, empties, alpha, beta, passed);
+        }
+        if ((++nodes & 1023) == 0 && stopped) {
+            return 0;
+        }
+
+        // Probe the hash table for a cutoff and a best move
+        int hashMove = TranspositionTable.NO_MOVE;
+        long entry = table.probe(hash);
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            int s = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || bound == TranspositionTable.LOWER && s >= beta
+                    || bound == TranspositionTable.UPPER && s <= alpha) {
+                return s;
+            }
+        }
+
+        long moves = Bitboard.moves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                return finalScore(own, opp, empties);
+            }
+            return -solve(opp, own, Zobrist.afterPass(hash), !white, empties,
+                    -beta, -alpha, true);
+        }
+
+        int alphaOrig = alpha;
+        int best = -Model.ROWS * Model.COLS - 1;
+        int bestMove = TranspositionTable.NO_MOVE;
+        int count = order(own, opp, moves, hashMove, empties);
+        int[] ordered = moveBuffer[empties];
+        for (int i = 0; i < count && alpha < beta; i++) {
+            int move = ordered[i];
+            long flips = Bitboard.flips(own, opp, move);
+            long nextOwn = opp & ~flips;
+            long nextOpp = own | flips | (1L << move);
+            long nextHash = Zobrist.afterMove(hash, white, move, flips);
+
+            // Principal variation search: after the first move, prove that a
+            // move is no better with a null window before searching it fully
+            int s;
+            if (i == 0) {
+                s = -solve(nextOwn, nextOpp, nextHash, !white, empties - 1,
+                        -beta, -alpha, false);
+            } else {
+                s = -solve(nextOwn, nextOpp, nextHash, !white, empties - 1,
+                        -alpha - 1, -alpha, false);
+                if (s > alpha && s < beta) {
+                    s = -solve(nextOwn, nextOpp, nextHash, !white,
+                            empties - 1, -beta, -s, false);
+                }
+            }
+            if (s > best) {
+                best = s;
+                bestMove = move;
+                alpha = Math.max(alpha, s);
+            }
+        }
+        if (!stopped) {
+            int bound = best <= alphaOrig ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER
+                    : TranspositionTable.EXACT;
+            table.store(hash, best, empties, bound, bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * Negamax search of the last few empty cells. The empty cells are tried
+     * directly, odd quadrants first, and a cell without flips is skipped.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param empties number of empty cells, at most LAST_EMPTIES
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @param passed true if the opponent passed to get here
+     * @return final disc difference from the point of view of the player to
+     * move
+     */
+    private int lastEmpties(long own, long opp, int empties, int alpha,
+            int beta, boolean passed) {
+        nodes++;
+        long empty = ~(own | opp);
+        if (empties == 1) {
+            return lastEmpty(own, opp, Long.numberOfTrailingZeros(empty));
+        }
+        int best = -Model.ROWS * Model.COLS - 1;
+        long odd = oddQuadrants(empty);
+        for (int pass = 0; pass < 2 && alpha < beta; pass++) {
+            long cells = empty & (pass == 0 ? odd : ~odd);
+            while (cells != 0 && alpha < beta) {
+                int move = Long.numberOfTrailingZeros(cells);
+                cells &= cells - 1;
+                long flips = Bitboard.flips(own, opp, move);
+                if (flips == 0) {
+                    continue;
+                }
+                int s = -lastEmpties(opp & ~flips, own | flips | (1L << move),
+                        empties - 1, -beta, -alpha, false);
+                if (s > best) {
+                    best = s;
+                    alpha = Math.max(alpha, s);
+                }
+            }
+        }
+        if (best == -Model.ROWS * Model.COLS - 1) { // no legal move
+            if (passed) {
+                return finalScore(own, opp, empties);
+            }
+            return -lastEmpties(opp, own, empties, -beta, -alpha, true);
+        }
+        return best;
+    }
+
+    /**
+     * Final disc difference with one empty cell left: the player to move takes
+     * it if possible, and otherwise the opponent.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param square the empty cell
+     * @return final disc difference from the point of view of the player to
+     * move
+     */
+    private static int lastEmpty(long own, long opp, int square) {
+        int diff = Long.bitCount(own) - Long.bitCount(opp);
+        int flipped = Long.bitCount(Bitboard.flips(own, opp, square));
+        if (flipped > 0) {
+            return diff + 2 * flipped + 1;
+        }
+        flipped = Long.bitCount(Bitboard.flips(opp, own, square));
+        if (flipped > 0) {
+            return diff - 2 * flipped - 1;
+        }
+        return diff > 0 ? diff + 1 : diff < 0 ? diff - 1 : 0;
+    }
+
+    /**
+     * Final disc difference of a finished game, empty cells to the winner.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param empties number of empty cells
+     * @return final disc difference from the point of view of the player to
+     * move
+     */
+    private static int finalScore(long own, long opp, int empties) {
+        int diff = Long.bitCount(own) - Long.bitCount(opp);
+        return diff > 0 ? diff + empties : diff < 0 ? diff - empties : 0;
+    }
+
+    /**
+     * Order the moves into the move buffer of a number of empty cells: the
+     * hash move, then moves into odd quadrants, then the rest. With many
+     * empty cells, moves with equal parity go fastest first. Nothing is
+     * allocated.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param moves bitboard of the legal moves
+     * @param hashMove move to search first, NO_MOVE if none
+     * @param empties number of empty cells, selects the buffer
+     * @return number of moves
+     */
+    private int order(long own, long opp, long moves, int hashMove,
+            int empties) {
+        int[] ordered = moveBuffer[empties];
+        int[] keys = keyBuffer[empties];
+        long odd = oddQuadrants(~(own | opp));
+        boolean fastestFirst = empties >= FASTEST_FIRST_EMPTIES;
+        int count = 0;
+        while (moves != 0) {
+            int move = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            int key = (odd & (1L << move)) != 0 ? 0 : 64;
+            if (move == hashMove) {
+                key = -1;
+            } else if (fastestFirst) {
+                long flips = Bitboard.flips(own, opp, move);
+                key += Long.bitCount(Bitboard.moves(opp & ~flips,
+                        own | flips | (1L << move)));
+            }
+
+            // Insertion sort, the lists are short
+            int i = count++;
+            while (i > 0 && keys[i - 1] > key) {
+                keys[i] = keys[i - 1];
+                ordered[i] = ordered[i - 1];
+                i--;
+            }
+            keys[i] = key;
+            ordered[i] = move;
+        }
+        return count;
+    }
+
+    /**
+     * Return the quadrants with an odd number of empty cells.
+     *
+     * @param empty bitboard of the empty cells
+     * @return union of the odd quadrants
+     */
+    private static long oddQuadrants(long empty) {
+        long odd = 0;
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                odd |= quadrant;
+            }
+        }
+        return odd;
+    }
+}
@@ -0,0 +1,55 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * A way of choosing the computer move. The engines of the game are listed by
+ * Engines, and the engine of a Model is chosen with Model.setEngine. An
+ * engine searches one position at a time and reports the cost of its latest
+ * move, so that playing strength can be weighed against CPU time.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public interface Engine {
+
+    /**
+     * Get the name of this engine, as shown in the menu.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Return the move to make for the player to move in a Model. The board is
+     * not changed. May be called from a background thread while the board is
+     * locked.
+     *
+     * @param model the Model
+     * @param listener listener for search progress, or null
+     * @return square (row * Model.COLS + col) of the move, -1 if there is no
+     * legal move
+     */
+    int bestMove(Model model, SearchListener listener);
+
+    /**
+     * Stop the engine for good: an ongoing bestMove returns the best move
+     * found so far, and a later bestMove returns a legal move at once. A stop
+     * that comes before the search starts is therefore not lost. May be called
+     * from any thread. Use an engine of its own for each move that may be
+     * stopped, see Model.createEngine.
+     */
+    void stop();
+
+    /**
+     * Get the number of nodes searched by the latest bestMove.
+     *
+     * @return nodes searched
+     */
+    long getNodes();
+
+    /**
+     * Get the time spent by the latest bestMove.
+     *
+     * @return time spent in milliseconds
+     */
+    long getTime();
+}
@@ -0,0 +1,119 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Registry of the engines of the game, from the weakest to the strongest:
+ * <ul>
+ * <li>Greedy, looking one ply ahead,</li>
+ * <li>alpha-beta searches to a fixed depth,</li>
+ * <li>time-limited searches, as deep as a time budget allows,</li>
+ * <li>Endgame solver, a time-limited search that solves the game exactly
+ * from more empty cells,</li>
+ * </ul>
+ * and Standard, which searches within the search limits of the Model. Every
+ * engine but Greedy plays from the opening book of the Model.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class Engines {
+
+    /**
+     * Name of the greedy engine.
+     */
+    public static final String GREEDY = "Greedy";
+
+    /**
+     * Name of the engine searching within the search limits of the Model, the
+     * default engine.
+     */
+    public static final String STANDARD = "Standard";
+
+    /**
+     * Name of the engine solving the game exactly from ENDGAME_EMPTIES empty
+     * cells.
+     */
+    public static final String ENDGAME = "Endgame solver";
+
+    private static final int[] DEPTHS = {2, 4, 6};
+    private static final int[] SECONDS = {1, 5};
+    private static final int ENDGAME_EMPTIES = 18;
+    private static final long ENDGAME_TIME = 1000;
+
+    /**
+     * Not to be instantiated.
+     */
+    private Engines() {
+    }
+
+    /**
+     * Get the names of the engines, from the weakest to the strongest, then
+     * Standard.
+     *
+     * @return the names
+     */
+    public static String[] getNames() {
+        String[] names = new String[DEPTHS.length + SECONDS.length + 3];
+        int k = 0;
+        names[k++] = GREEDY;
+        for (int depth : DEPTHS) {
+            names[k++] = depthName(depth);
+        }
+        for (int seconds : SECONDS) {
+            names[k++] = timeName(seconds);
+        }
+        names[k++] = ENDGAME;
+        names[k] = STANDARD;
+        return names;
+    }
+
+    /**
+     * Create an engine. Each Model needs an engine of its own, since an engine
+     * searches one position at a time.
+     *
+     * @param name one of the names of getNames
+     * @return the engine
+     * @throws IllegalArgumentException if there is no engine of that name
+     */
+    public static Engine create(String name) {
+        switch (name) {
+            case GREEDY:
+                return new GreedyEngine();
+            case STANDARD:
+                return new AI(name);
+            case ENDGAME:
+                return new AI(name, 0, ENDGAME_TIME, ENDGAME_EMPTIES);
+            default:
+                for (int depth : DEPTHS) {
+                    if (name.equals(depthName(depth))) {
+                        return new AI(name, depth, 0, 0);
+                    }
+                }
+                for (int seconds : SECONDS) {
+                    if (name.equals(timeName(seconds))) {
+                        return new AI(name, 0, 1000L * seconds, 0);
+                    }
+                }
+                throw new IllegalArgumentException("No such engine: " + name);
+        }
+    }
+
+    /**
+     * Return the name of the alpha-beta engine of a depth.
+     *
+     * @param depth search depth in plies
+     * @return the name
+     */
+    private static String depthName(int depth) {
+        return "Alpha-beta, depth " + depth;
+    }
+
+    /**
+     * Return the name of the time-limited engine of a time budget.
+     *
+     * @param seconds time budget in seconds
+     * @return the name
+     */
+    private static String timeName(int seconds) {
+        return "Time-limited, " + seconds + " s";
+    }
+}
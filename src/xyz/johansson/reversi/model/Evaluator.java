@@ -0,0 +1,23 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Static evaluation of a board state, used by the computer at the leaves of
+ * its search. An Evaluator is shared between the threads of a parallel search,
+ * so it must be thread safe and should not allocate.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public interface Evaluator {
+
+    /**
+     * Evaluate a board state. A finished game scores 1000 per disc of
+     * difference, so the result should stay well within plus and minus 1000.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @return score from the point of view of the player to move, higher is
+     * better
+     */
+    int evaluate(long own, long opp);
+}
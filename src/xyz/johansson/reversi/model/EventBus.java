@@ -0,0 +1,134 @@
+package xyz.johansson.reversi.model;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Event bus of a Model, replacing java.util.Observable. The listeners are
+ * kept in a copy-on-write list, so publishing takes no lock, and each
+ * listener is called on an Executor of its own: a listener on the event
+ * dispatch thread, a background engine and a logger consume the same changes
+ * at their own pace without blocking the thread that changes the Model.
+ * <p>
+ * Each listener has a queue of ModelSnapshots. The first snapshot queued
+ * while the listener is idle submits a task to its Executor, and the task
+ * delivers the queued snapshots one at a time and in order, whatever the
+ * Executor. A listener that throws is logged and keeps getting snapshots.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class EventBus {
+
+    /**
+     * Executor calling the listener on the thread that changed the Model.
+     */
+    public static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions
+            = new CopyOnWriteArrayList<>();
+
+    /**
+     * A listener, its Executor and its queue of undelivered snapshots.
+     */
+    private static final class Subscription implements Runnable {
+
+        private final ModelListener listener;
+        private final Executor executor;
+        private final ConcurrentLinkedQueue<ModelSnapshot> queue
+                = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Construct a Subscription.
+         *
+         * @param l the listener
+         * @param e the Executor of the listener
+         */
+        Subscription(ModelListener l, Executor e) {
+            this.listener = l;
+            this.executor = e;
+        }
+
+        /**
+         * Queue a snapshot, and submit the delivery unless it is pending.
+         *
+         * @param snapshot the snapshot
+         */
+        void offer(ModelSnapshot snapshot) {
+            queue.offer(snapshot);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Deliver the queued snapshots in order.
+         */
+        @Override
+        public void run() {
+            do {
+                ModelSnapshot snapshot;
+                while ((snapshot = queue.poll()) != null) {
+                    try {
+                        listener.modelChanged(snapshot);
+                    } catch (RuntimeException ex) {
+                        Logger.getLogger(EventBus.class.getName()).log(
+                                Level.SEVERE, null, ex);
+                    }
+                }
+                scheduled.set(false);
+
+                // A snapshot queued after the last poll is delivered here
+            } while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+    }
+
+    /**
+     * Add a listener, called on an Executor. A listener added twice is called
+     * twice.
+     *
+     * @param l the listener
+     * @param e the Executor, e.g. DIRECT or a single thread executor
+     */
+    public void addListener(ModelListener l, Executor e) {
+        if (l == null || e == null) {
+            throw new NullPointerException();
+        }
+        subscriptions.add(new Subscription(l, e));
+    }
+
+    /**
+     * Remove every registration of a listener. Snapshots already submitted to
+     * its Executor may still be delivered.
+     *
+     * @param l the listener
+     */
+    public void removeListener(ModelListener l) {
+        for (Subscription s : subscriptions) {
+            if (s.listener == l) {
+                subscriptions.remove(s);
+            }
+        }
+    }
+
+    /**
+     * Publish a snapshot to every listener.
+     *
+     * @param snapshot the snapshot
+     */
+    void publish(ModelSnapshot snapshot) {
+        for (Subscription s : subscriptions) {
+            s.offer(snapshot);
+        }
+    }
+}
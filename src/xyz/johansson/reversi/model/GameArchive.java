@@ -0,0 +1,242 @@
+package xyz.johansson.reversi.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Archive of many games in one file. The file is a header (magic number and
+ * record size) followed by fixed-size GameFormat records, padded to
+ * RECORD_SIZE bytes, so that game i is found at a computed offset. The archive
+ * is read through memory mapping: scanning millions of games touches no
+ * streams and allocates no objects per game, and a game is only turned into a
+ * Model on demand. Games are added with a GameArchive.Writer.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class GameArchive implements Closeable {
+
+    /**
+     * Size of a record in the archive, enough for Model.MAX_PLIES plies.
+     */
+    public static final int RECORD_SIZE = 160;
+
+    private static final int MAGIC = 0x52565341; // "RVSA"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORDS_PER_MAP = Integer.MAX_VALUE / RECORD_SIZE;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] maps;
+    private final long size;
+
+    /**
+     * Open an archive for reading and map it into memory.
+     *
+     * @param f the archive file
+     * @throws java.io.IOException if the file cannot be read or is not an
+     * archive
+     */
+    public GameArchive(File f) throws IOException {
+        file = new RandomAccessFile(f, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != RECORD_SIZE) {
+                throw new IOException("Not a Reversi game archive");
+            }
+            size = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+
+            // A mapping is limited to 2 GB, so map the records in segments
+            maps = new MappedByteBuffer[(int) ((size + RECORDS_PER_MAP - 1)
+                    / RECORDS_PER_MAP)];
+            for (int i = 0; i < maps.length; i++) {
+                long first = (long) i * RECORDS_PER_MAP;
+                long records = Math.min(RECORDS_PER_MAP, size - first);
+                maps[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + first * RECORD_SIZE,
+                        records * RECORD_SIZE);
+            }
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the number of games in the archive.
+     *
+     * @return number of games
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Load a game into a Model and notify its listeners.
+     *
+     * @param game game index
+     * @param model the Model
+     * @throws java.io.IOException if the game is invalid
+     */
+    public void read(long game, Model model) throws IOException {
+        GameFormat.getRecord(map(game), offset(game), model);
+    }
+
+    /**
+     * Get the bitboard of the white tokens at the end of a game.
+     *
+     * @param game game index
+     * @return bitboard of the white tokens
+     */
+    public long getWhite(long game) {
+        return map(game).getLong(offset(game) + 1);
+    }
+
+    /**
+     * Get the bitboard of the black tokens at the end of a game.
+     *
+     * @param game game index
+     * @return bitboard of the black tokens
+     */
+    public long getBlack(long game) {
+        return map(game).getLong(offset(game) + 9);
+    }
+
+    /**
+     * Get the number of plies of a game.
+     *
+     * @param game game index
+     * @return number of plies, at most Model.MAX_PLIES
+     * @throws java.io.IOException if the record has more plies than fit
+     */
+    public int getMoveCount(long game) throws IOException {
+        int count = map(game).get(offset(game) + 18) & 0xFF;
+        if (count > Model.MAX_PLIES) {
+            throw new IOException("Invalid game " + game + ": " + count
+                    + " plies");
+        }
+        return count;
+    }
+
+    /**
+     * Get a ply of a game.
+     *
+     * @param game game index
+     * @param ply ply, from 0 to getMoveCount(game) - 1
+     * @return the move as (row * Model.COLS + col), or Model.PASS
+     */
+    public int getMove(long game, int ply) {
+        return map(game).get(offset(game) + GameFormat.HEADER_SIZE + ply);
+    }
+
+    /**
+     * Close the archive. The mappings stay valid until garbage collected.
+     *
+     * @throws java.io.IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Get the mapping holding a game.
+     *
+     * @param game game index
+     * @return the mapping
+     */
+    private MappedByteBuffer map(long game) {
+        if (game < 0 || game >= size) {
+            throw new IndexOutOfBoundsException("game: " + game);
+        }
+        return maps[(int) (game / RECORDS_PER_MAP)];
+    }
+
+    /**
+     * Get the offset of a game within its mapping.
+     *
+     * @param game game index
+     * @return the offset
+     */
+    private static int offset(long game) {
+        return (int) (game % RECORDS_PER_MAP) * RECORD_SIZE;
+    }
+
+    /**
+     * Appends games to an archive, creating it if it does not exist.
+     */
+    public static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer record = ByteBuffer.allocateDirect(
+                RECORD_SIZE);
+
+        /**
+         * Open an archive for appending.
+         *
+         * @param f the archive file
+         * @throws java.io.IOException if the file cannot be written or is not
+         * an archive
+         */
+        public Writer(File f) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(f, "rw");
+            channel = file.getChannel();
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                if (channel.size() == 0) {
+                    header.putInt(MAGIC).putInt(RECORD_SIZE).flip();
+                    channel.write(header, 0);
+                } else {
+                    channel.read(header, 0);
+                    if (header.getInt(0) != MAGIC
+                            || header.getInt(4) != RECORD_SIZE) {
+                        throw new IOException("Not a Reversi game archive");
+                    }
+                }
+
+                // Drop a partly written record at the end
+                long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+                channel.position(HEADER_SIZE + records * RECORD_SIZE);
+            } catch (IOException ex) {
+                file.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Append the game of a Model.
+         *
+         * @param model the Model
+         * @throws java.io.IOException if writing fails or the game does not
+         * fit a record, see GameFormat.checkRecord
+         */
+        public void append(Model model) throws IOException {
+            GameFormat.checkRecord(model);
+            record.clear();
+            GameFormat.putRecord(record, model);
+            while (record.hasRemaining()) {
+                record.put((byte) 0); // padding
+            }
+            record.flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+
+        /**
+         * Close the archive.
+         *
+         * @throws java.io.IOException if closing fails
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package xyz.johansson.reversi.model;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary format for a saved game. A game record is
+ * <pre>
+ * version     1 byte
+ * white       8 bytes, bitboard
+ * black       8 bytes, bitboard
+ * flags       1 byte, see the FLAG_ constants
+ * move count  1 byte
+ * moves       1 byte per ply, (row * Model.COLS + col) or Model.PASS
+ * </pre>
+ * A game file is a 4 byte magic number followed by one record. When a record
+ * is read, the move list is replayed from the starting position and must
+ * reproduce the board, so a corrupt file is rejected instead of loaded. Only
+ * games on the Model.ROWS x COLS board fit the record.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class GameFormat {
+
+    /**
+     * Current version of the record layout.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Size of a record without its moves, in bytes.
+     */
+    static final int HEADER_SIZE = 19;
+
+    static final int MAGIC = 0x52565347; // "RVSG"
+    static final int FLAG_STARTED = 1;
+    static final int FLAG_LOCKED = 2;
+    static final int FLAG_WHITES_TURN = 4;
+    static final int FLAG_PVP = 8;
+    static final int FLAG_PASSED = 16;
+    static final int FLAG_MASK = 31; // every flag
+
+    private GameFormat() {
+    }
+
+    /**
+     * Write the game of a Model to a stream.
+     *
+     * @param model the Model
+     * @param out the stream
+     * @throws java.io.IOException if writing fails or the game does not fit a
+     * record, see checkRecord
+     */
+    public static void write(Model model, OutputStream out)
+            throws IOException {
+        checkRecord(model);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + HEADER_SIZE
+                + model.getMoveCount());
+        buffer.putInt(MAGIC);
+        putRecord(buffer, model);
+        out.write(buffer.array());
+    }
+
+    /**
+     * Read a game from a stream into a Model and notify its listeners.
+     *
+     * @param in the stream
+     * @param model the Model
+     * @throws java.io.IOException if reading fails or the game is invalid
+     */
+    public static void read(InputStream in, Model model) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a Reversi game file");
+        }
+        byte[] header = new byte[HEADER_SIZE];
+        data.readFully(header);
+        int count = header[HEADER_SIZE - 1] & 0xFF;
+        byte[] record = new byte[HEADER_SIZE + count];
+        System.arraycopy(header, 0, record, 0, HEADER_SIZE);
+        data.readFully(record, HEADER_SIZE, record.length - HEADER_SIZE);
+        getRecord(ByteBuffer.wrap(record), 0, model);
+    }
+
+    /**
+     * Check that the game of a Model fits a record: it is on the Model.ROWS x
+     * COLS board and its board is the result of its move list.
+     *
+     * @param model the Model
+     * @throws java.io.IOException if the game does not fit a record
+     */
+    static void checkRecord(Model model) throws IOException {
+        if (model.getSize() != Model.ROWS) {
+            throw new IOException("Only games on the " + Model.ROWS + "x"
+                    + Model.COLS + " board can be saved");
+        }
+        if (model.getMoveCount() == 0
+                && (model.getWhite() != Bitboard.START_WHITE
+                || model.getBlack() != Bitboard.START_BLACK)) {
+            throw new IOException("Only games with their move list can be"
+                    + " saved");
+        }
+    }
+
+    /**
+     * Put the record of a Model at the position of a buffer.
+     *
+     * @param buffer the buffer
+     * @param model the Model
+     */
+    static void putRecord(ByteBuffer buffer, Model model) {
+        int flags = (model.getGameStarted() ? FLAG_STARTED : 0)
+                | (model.getBoardLocked() ? FLAG_LOCKED : 0)
+                | (model.getWhitesTurn() ? FLAG_WHITES_TURN : 0)
+                | (model.getPvP() ? FLAG_PVP : 0)
+                | (model.getPassed() ? FLAG_PASSED : 0);
+        buffer.put((byte) VERSION);
+        buffer.putLong(model.getWhite());
+        buffer.putLong(model.getBlack());
+        buffer.put((byte) flags);
+        buffer.put((byte) model.getMoveCount());
+        for (int i = 0; i < model.getMoveCount(); i++) {
+            buffer.put((byte) model.getMove(i));
+        }
+    }
+
+    /**
+     * Validate the record at an offset of a buffer and restore it in a Model.
+     * The position of the buffer is not used or changed.
+     *
+     * @param buffer the buffer
+     * @param offset offset of the record
+     * @param model the Model
+     * @throws java.io.IOException if the record is invalid
+     */
+    static void getRecord(ByteBuffer buffer, int offset, Model model)
+            throws IOException {
+        if (buffer.get(offset) != VERSION) {
+            throw new IOException("Unsupported version: " + buffer.get(offset));
+        }
+        long white = buffer.getLong(offset + 1);
+        long black = buffer.getLong(offset + 9);
+        int flags = buffer.get(offset + 17) & 0xFF;
+        int count = buffer.get(offset + 18) & 0xFF;
+        if ((white & black) != 0 || count > Model.MAX_PLIES
+                || (flags & ~FLAG_MASK) != 0 || (flags & FLAG_STARTED) == 0) {
+            throw new IOException("Corrupt game");
+        }
+        byte[] moves = new byte[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = buffer.get(offset + HEADER_SIZE + i);
+        }
+        boolean whitesTurn = (flags & FLAG_WHITES_TURN) != 0;
+        boolean locked = (flags & FLAG_LOCKED) != 0;
+        boolean passed = (flags & FLAG_PASSED) != 0;
+
+        // Without moves the board is the starting position
+        if (!replays(moves, white, black, whitesTurn, locked)) {
+            throw new IOException("Corrupt game: moves do not match board");
+        }
+
+        // The board is locked when the game is over, else the player to move
+        // has a move; passed when the last ply is a pass
+        long own = whitesTurn ? white : black, opp = whitesTurn ? black : white;
+        boolean over = (Bitboard.moves(own, opp)
+                | Bitboard.moves(opp, own)) == 0;
+        boolean lastPass = count > 0 && moves[count - 1] == Model.PASS;
+        if (locked != over || passed != lastPass
+                || !locked && Bitboard.moves(own, opp) == 0) {
+            throw new IOException("Corrupt game: flags do not match board");
+        }
+        model.restore(white, black, true, locked, whitesTurn,
+                (flags & FLAG_PVP) != 0, passed, moves, count);
+    }
+
+    /**
+     * Check that a move list played from the starting position gives a board.
+     *
+     * @param moves the move list
+     * @param white bitboard of the white tokens
+     * @param black bitboard of the black tokens
+     * @param whitesTurn true if white is to move
+     * @param finished true if the game is finished, when the player to move
+     * is not checked
+     * @return true if the moves are legal and give the board
+     */
+    static boolean replays(byte[] moves, long white, long black,
+            boolean whitesTurn, boolean finished) {
+        long own = Bitboard.START_WHITE, opp = Bitboard.START_BLACK;
+        boolean turn = true;
+        for (byte move : moves) {
+            if (move == Model.PASS) {
+                // Only a player without a move passes, and not to end the game
+                if (Bitboard.moves(own, opp) != 0
+                        || Bitboard.moves(opp, own) == 0) {
+                    return false;
+                }
+            } else {
+                if (move < 0 || move >= Model.PASS
+                        || (Bitboard.moves(own, opp) & (1L << move)) == 0) {
+                    return false;
+                }
+                long flips = Bitboard.flips(own, opp, move);
+                own |= flips | (1L << move);
+                opp &= ~flips;
+            }
+            long tmp = own;
+            own = opp;
+            opp = tmp;
+            turn = !turn;
+        }
+        return (finished || turn == whitesTurn)
+                && (turn ? own == white && opp == black
+                        : own == black && opp == white);
+    }
+}
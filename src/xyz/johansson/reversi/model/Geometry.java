@@ -0,0 +1,388 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * The rules on a square board of any even size from 4 to 16, for the boards
+ * larger than the classic 8x8 board, which keeps its single-long bitboards
+ * (see Bitboard). A set of cells is a multi-word bitset: cell (row, col) is
+ * square (row * size + col) and bit (square % 64) of word (square / 64).
+ * <p>
+ * Legal moves are generated for all cells at once by shifting the bitsets in
+ * the eight directions, as Bitboard does, with edge masks against wrapping
+ * around the board. The flips of a single move follow precomputed ray
+ * tables: the squares from each square to the edge of the board in each
+ * direction. A Geometry is shared and immutable; nothing is allocated, the
+ * caller passes the arrays to fill.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+final class Geometry {
+
+    /**
+     * Smallest board size.
+     */
+    static final int MIN_SIZE = 4;
+
+    /**
+     * Largest board size.
+     */
+    static final int MAX_SIZE = 16;
+
+    /**
+     * Row and column steps of the eight directions.
+     */
+    private static final int[] ROW_STEPS = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] COL_STEPS = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    private static final Geometry[] CACHE = new Geometry[MAX_SIZE + 1];
+
+    private final int size;
+    private final int cells;
+    private final int words;
+    private final int[][][] rays; // squares per square and direction
+    private final long[] valid; // every cell of the board
+    private final long[] notFirstCol; // every cell but those of column 0
+    private final long[] notLastCol; // every cell but those of the last column
+
+    /**
+     * Construct the Geometry of a board size.
+     *
+     * @param size number of rows and columns
+     */
+    private Geometry(int size) {
+        this.size = size;
+        this.cells = size * size;
+        this.words = (cells + 63) / 64;
+        this.valid = new long[words];
+        this.notFirstCol = new long[words];
+        this.notLastCol = new long[words];
+        this.rays = new int[cells][8][];
+        for (int square = 0; square < cells; square++) {
+            int row = square / size, col = square % size;
+            set(valid, square);
+            if (col != 0) {
+                set(notFirstCol, square);
+            }
+            if (col != size - 1) {
+                set(notLastCol, square);
+            }
+            for (int dir = 0; dir < 8; dir++) {
+                int length = 0;
+                int r = row + ROW_STEPS[dir], c = col + COL_STEPS[dir];
+                while (r >= 0 && r < size && c >= 0 && c < size) {
+                    length++;
+                    r += ROW_STEPS[dir];
+                    c += COL_STEPS[dir];
+                }
+                int[] ray = new int[length];
+                for (int i = 0; i < length; i++) {
+                    ray[i] = (row + (i + 1) * ROW_STEPS[dir]) * size
+                            + col + (i + 1) * COL_STEPS[dir];
+                }
+                rays[square][dir] = ray;
+            }
+        }
+    }
+
+    /**
+     * Return the Geometry of a board size, created on first use.
+     *
+     * @param size number of rows and columns, even and from MIN_SIZE to
+     * MAX_SIZE
+     * @return the Geometry
+     * @throws IllegalArgumentException if the size is not supported
+     */
+    static synchronized Geometry of(int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE || size % 2 != 0) {
+            throw new IllegalArgumentException("Invalid board size: " + size);
+        }
+        if (CACHE[size] == null) {
+            CACHE[size] = new Geometry(size);
+        }
+        return CACHE[size];
+    }
+
+    /**
+     * Get the number of rows and columns.
+     *
+     * @return the board size
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of cells.
+     *
+     * @return size * size
+     */
+    int getCells() {
+        return cells;
+    }
+
+    /**
+     * Get the number of words of a bitset of this board.
+     *
+     * @return number of longs
+     */
+    int getWords() {
+        return words;
+    }
+
+    /**
+     * Set the four tokens of the start position, white on the diagonal from
+     * the top left as on the classic board.
+     *
+     * @param white bitset to fill with the white tokens
+     * @param black bitset to fill with the black tokens
+     */
+    void start(long[] white, long[] black) {
+        int c = size / 2;
+        clear(white);
+        clear(black);
+        set(white, (c - 1) * size + c - 1);
+        set(white, c * size + c);
+        set(black, (c - 1) * size + c);
+        set(black, c * size + c - 1);
+    }
+
+    /**
+     * Compute the legal moves of the player owning own.
+     *
+     * @param own bitset of the player to move
+     * @param opp bitset of the opponent
+     * @param moves bitset to fill with the legal moves
+     * @param tmp scratch bitset
+     * @return true if there is a legal move
+     */
+    boolean moves(long[] own, long[] opp, long[] moves, long[] tmp) {
+        clear(moves);
+        for (int dir = 0; dir < 8; dir++) {
+            int step = ROW_STEPS[dir] * size + COL_STEPS[dir];
+            long[] mask = COL_STEPS[dir] > 0 ? notFirstCol
+                    : COL_STEPS[dir] < 0 ? notLastCol : valid;
+
+            // Runs of opponent tokens next to own tokens, then the empty cell
+            shift(own, step, mask, tmp);
+            and(tmp, opp);
+            for (int i = 0; i < size - 3; i++) {
+                long any = 0;
+                for (int w = 0; w < words; w++) {
+                    any |= tmp[w];
+                }
+                if (any == 0) {
+                    break;
+                }
+                shiftOr(tmp, step, mask, opp);
+            }
+            shift(tmp, step, mask, tmp);
+            for (int w = 0; w < words; w++) {
+                moves[w] |= tmp[w] & ~(own[w] | opp[w]) & valid[w];
+            }
+        }
+        for (int w = 0; w < words; w++) {
+            if (moves[w] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compute the tokens flipped by a move. Follows the ray tables.
+     *
+     * @param own bitset of the player to move
+     * @param opp bitset of the opponent
+     * @param square square of the move, an empty cell
+     * @param flips bitset to fill with the flipped tokens
+     * @return number of flipped tokens, 0 if the move is illegal
+     */
+    int flips(long[] own, long[] opp, int square, long[] flips) {
+        clear(flips);
+        int count = 0;
+        for (int[] ray : rays[square]) {
+            int n = 0;
+            while (n < ray.length && get(opp, ray[n])) {
+                n++;
+            }
+            if (n > 0 && n < ray.length && get(own, ray[n])) {
+                for (int i = 0; i < n; i++) {
+                    set(flips, ray[i]);
+                }
+                count += n;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check if a move is legal, without computing its flips.
+     *
+     * @param own bitset of the player to move
+     * @param opp bitset of the opponent
+     * @param square square of the move
+     * @return true if the cell is empty and the move flips a token
+     */
+    boolean isLegal(long[] own, long[] opp, int square) {
+        if (get(own, square) || get(opp, square)) {
+            return false;
+        }
+        for (int[] ray : rays[square]) {
+            int n = 0;
+            while (n < ray.length && get(opp, ray[n])) {
+                n++;
+            }
+            if (n > 0 && n < ray.length && get(own, ray[n])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Shift a bitset by a number of squares and mask the result. The source
+     * and the destination may be the same array.
+     *
+     * @param src the bitset
+     * @param step squares to shift by, towards higher squares if positive
+     * @param mask cells the result is masked with
+     * @param dst bitset to fill
+     */
+    private void shift(long[] src, int step, long[] mask, long[] dst) {
+        if (step > 0) {
+            int wordShift = step >>> 6, bitShift = step & 63;
+            for (int w = words - 1; w >= 0; w--) {
+                int from = w - wordShift;
+                long v = from >= 0 ? src[from] << bitShift : 0;
+                if (bitShift != 0 && from - 1 >= 0) {
+                    v |= src[from - 1] >>> (64 - bitShift);
+                }
+                dst[w] = v & mask[w];
+            }
+        } else {
+            int wordShift = -step >>> 6, bitShift = -step & 63;
+            for (int w = 0; w < words; w++) {
+                int from = w + wordShift;
+                long v = from < words ? src[from] >>> bitShift : 0;
+                if (bitShift != 0 && from + 1 < words) {
+                    v |= src[from + 1] << (64 - bitShift);
+                }
+                dst[w] = v & mask[w];
+            }
+        }
+    }
+
+    /**
+     * Extend runs by one square: run |= shift(run) & filter.
+     *
+     * @param run the runs, updated in place
+     * @param step squares to shift by
+     * @param mask edge mask of the direction
+     * @param filter cells a run may extend onto
+     */
+    private void shiftOr(long[] run, int step, long[] mask, long[] filter) {
+        if (step > 0) {
+            int wordShift = step >>> 6, bitShift = step & 63;
+            for (int w = words - 1; w >= 0; w--) {
+                int from = w - wordShift;
+                long v = from >= 0 ? run[from] << bitShift : 0;
+                if (bitShift != 0 && from - 1 >= 0) {
+                    v |= run[from - 1] >>> (64 - bitShift);
+                }
+                run[w] |= v & mask[w] & filter[w];
+            }
+        } else {
+            int wordShift = -step >>> 6, bitShift = -step & 63;
+            for (int w = 0; w < words; w++) {
+                int from = w + wordShift;
+                long v = from < words ? run[from] >>> bitShift : 0;
+                if (bitShift != 0 && from + 1 < words) {
+                    v |= run[from + 1] << (64 - bitShift);
+                }
+                run[w] |= v & mask[w] & filter[w];
+            }
+        }
+    }
+
+    /**
+     * Intersect a bitset with another in place.
+     *
+     * @param a the bitset, updated
+     * @param b the other bitset
+     */
+    private void and(long[] a, long[] b) {
+        for (int w = 0; w < words; w++) {
+            a[w] &= b[w];
+        }
+    }
+
+    /**
+     * Check if a cell is in a bitset.
+     *
+     * @param b the bitset
+     * @param square the cell
+     * @return true if the bit of the cell is set
+     */
+    static boolean get(long[] b, int square) {
+        return (b[square >>> 6] & (1L << square)) != 0;
+    }
+
+    /**
+     * Add a cell to a bitset.
+     *
+     * @param b the bitset
+     * @param square the cell
+     */
+    static void set(long[] b, int square) {
+        b[square >>> 6] |= 1L << square;
+    }
+
+    /**
+     * Remove every cell from a bitset.
+     *
+     * @param b the bitset
+     */
+    static void clear(long[] b) {
+        for (int w = 0; w < b.length; w++) {
+            b[w] = 0;
+        }
+    }
+
+    /**
+     * Count the cells of a bitset.
+     *
+     * @param b the bitset
+     * @return number of set bits
+     */
+    static int count(long[] b) {
+        int n = 0;
+        for (long word : b) {
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    /**
+     * Return the first cell of a bitset from a square on.
+     *
+     * @param b the bitset
+     * @param from first square to look at
+     * @return the square, -1 if there is none
+     */
+    static int next(long[] b, int from) {
+        int w = from >>> 6;
+        if (w >= b.length) {
+            return -1;
+        }
+        long word = b[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == b.length) {
+                return -1;
+            }
+            word = b[w];
+        }
+    }
+}
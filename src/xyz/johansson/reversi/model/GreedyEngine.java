@@ -0,0 +1,85 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Engine taking the legal move leading to the board state the evaluator of
+ * the Model scores best, looking one ply ahead. The weakest and cheapest
+ * engine. The board of the Model is only read, so that the View may show it
+ * meanwhile. On a board of another size than Model.ROWS x COLS the ply is
+ * scored by the evaluation of WideSearch.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+class GreedyEngine implements Engine {
+
+    private volatile long nodes;
+    private volatile long time;
+
+    @Override
+    public String getName() {
+        return Engines.GREEDY;
+    }
+
+    @Override
+    public int bestMove(Model model, SearchListener listener) {
+        long start = System.nanoTime();
+        Geometry geometry = model.getGeometry();
+        if (geometry != null) {
+            WideSearch search = new WideSearch(geometry, 1, 0, 0);
+            search.setListener(listener);
+            long[] white = model.getWideWhite(), black = model.getWideBlack();
+            int best = model.getWhitesTurn() ? search.bestMove(white, black)
+                    : search.bestMove(black, white);
+            nodes = search.getNodes();
+            time = (System.nanoTime() - start) / 1000000;
+            return best;
+        }
+        Evaluator evaluator = model.getEvaluator();
+        long own, opp;
+        if (model.getWhitesTurn()) {
+            own = model.getWhite();
+            opp = model.getBlack();
+        } else {
+            own = model.getBlack();
+            opp = model.getWhite();
+        }
+        int best = -1;
+        int bestScore = Integer.MIN_VALUE;
+        long legal = Bitboard.moves(own, opp);
+        nodes = Long.bitCount(legal);
+        while (legal != 0) {
+            int square = Long.numberOfTrailingZeros(legal);
+            legal &= legal - 1;
+
+            // Score the board state after the move for the mover
+            long flips = Bitboard.flips(own, opp, square);
+            int score = -evaluator.evaluate(opp & ~flips,
+                    own | flips | (1L << square));
+            if (score > bestScore) {
+                bestScore = score;
+                best = square;
+            }
+        }
+        time = (System.nanoTime() - start) / 1000000;
+        if (best >= 0 && listener != null) {
+            listener.iterationFinished(1, best / Model.COLS, best % Model.COLS,
+                    nodes);
+        }
+        return best;
+    }
+
+    @Override
+    public void stop() {
+        // a single ply is not worth stopping
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+}
@@ -1,7 +1,8 @@
 package xyz.johansson.reversi.model;
 
-import java.util.ArrayList;
-import java.util.Observable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Model class.
@@ -9,7 +10,7 @@ import java.util.Observable;
  * @author Tobias Johansson
  * @version 1.03, 3 Mar 2015
  */
-public class Model extends Observable {
+public class Model {
 
     /**
      * Number of rows.
@@ -36,18 +37,84 @@ public class Model extends Observable {
      */
     public static final int BLACK = 2;
 
-    private enum Direction {
+    /**
+     * Maximum number of plies in a game, moves and passes, on the ROWS x COLS
+     * board.
+     */
+    public static final int MAX_PLIES = 128;
 
-        UP_LEFT, UP, UP_RIGHT, RIGHT, DOWN_RIGHT, DOWN, DOWN_LEFT, LEFT;
-    }
+    /**
+     * Representing a pass in the move list of a game on the ROWS x COLS board.
+     * On a board of another size a pass is (size * size).
+     */
+    public static final int PASS = ROWS * COLS;
+
+    /**
+     * Board sizes a game can be played on, rows and columns.
+     */
+    public static final int[] BOARD_SIZES = {8, 10, 12, 16};
+
+    /**
+     * Default memory cap of the transposition table, in megabytes.
+     */
+    public static final int DEFAULT_HASH_SIZE = 16;
+
+    /**
+     * Default maximum search depth for the computer, in plies.
+     */
+    public static final int DEFAULT_SEARCH_DEPTH = 12;
+
+    /**
+     * Default time budget for a computer move, in milliseconds.
+     */
+    public static final long DEFAULT_SEARCH_TIME = 500;
+
+    /**
+     * Default number of empty cells from which the computer solves the game
+     * exactly.
+     */
+    public static final int DEFAULT_ENDGAME_EMPTIES = 14;
 
-    private int[][] board; // holds the status for each cell on the board
+    private long white; // bitboard of the white tokens
+    private long black; // bitboard of the black tokens
+    private int size = ROWS; // rows and columns of the board of this game
+    private Geometry geometry; // null on the ROWS x COLS board
+    private long[] wideWhite; // bitsets of the tokens on another board, or null
+    private long[] wideBlack;
+    private long[][] wideFlipList; // flipped tokens per ply on another board
+    private long[] wideMoves; // scratch bitsets on another board
+    private long[] wideTmp;
     private boolean gameStarted;
     private boolean boardLocked;
     private boolean whitesTurn;
     private boolean PvP; // Player vs Player
     private int whitePoints;
     private int blackPoints;
+    private int searchDepth = DEFAULT_SEARCH_DEPTH;
+    private long searchTime = DEFAULT_SEARCH_TIME;
+    private long searchNodes;
+    private ForkJoinPool searchPool; // null for a single-threaded search
+    private volatile int hashSize = DEFAULT_HASH_SIZE;
+    private volatile TranspositionTable table; // between moves of a game
+    private int endgameEmpties = DEFAULT_ENDGAME_EMPTIES;
+    private volatile TranspositionTable endgameTable; // kept between games
+    private volatile OpeningBook book; // null for no book
+    private volatile Evaluator evaluator = Search.DEFAULT_EVALUATOR;
+    private volatile Engine engine; // null until first used, see getEngine
+    private boolean ponderEnabled = true;
+    private Ponder ponder; // null when not pondering
+    private final Object ponderLock = new Object(); // guards ponder
+    private volatile long computerNodes; // cost of the last computer move
+    private volatile long computerTime;
+    private int lastMove = -1; // (row * size + col) of the last move
+    private boolean passed; // the opponent passed after the last move
+    private int pass = PASS; // a pass in the move list, (size * size)
+    private short[] moveList = new short[MAX_PLIES]; // squares and passes
+    private long[] flipList = new long[MAX_PLIES]; // flipped tokens per ply
+    private int moveCount; // plies played to the current position
+    private int historySize; // plies recorded, including undone ones
+    private volatile boolean computerThinking;
+    private final EventBus bus = new EventBus();
 
     /**
      * Construct an empty Model that is locked until a new game is created.
@@ -60,64 +127,297 @@ public class Model extends Observable {
     // Public methods
     /**
      * Start a new Player vs Player game session. Intiate private data field and
-     * notify Observer.
+     * notify listeners.
      */
     public void newPvP() {
-        board = new int[ROWS][COLS];
-        board[3][3] = WHITE;
-        board[3][4] = BLACK;
-        board[4][3] = BLACK;
-        board[4][4] = WHITE;
-        gameStarted = true;
-        boardLocked = false;
-        whitesTurn = true;
-        PvP = true;
-        whitePoints = 2;
-        blackPoints = 2;
+        newGame(ROWS, true);
+    }
 
-        // Notify the View
-        setChanged();
-        notifyObservers();
+    /**
+     * Start a new Player vs Player game session on a board of a given size.
+     * Intiate private data field and notify listeners.
+     *
+     * @param boardSize rows and columns of the board, see BOARD_SIZES
+     * @throws IllegalArgumentException if the size is not supported
+     */
+    public void newPvP(int boardSize) {
+        newGame(boardSize, true);
     }
 
     /**
      * Start a new Player vs Computer game session. Intiate private data field
-     * and notify Observer.
+     * and notify listeners.
      */
     public void newPvC() {
-        board = new int[ROWS][COLS];
-        board[3][3] = WHITE;
-        board[3][4] = BLACK;
-        board[4][3] = BLACK;
-        board[4][4] = WHITE;
-        gameStarted = true;
-        boardLocked = false;
-        whitesTurn = true;
-        PvP = false;
-        whitePoints = 2;
-        blackPoints = 2;
+        newGame(ROWS, false);
+    }
 
-        // Notify the View
-        setChanged();
-        notifyObservers();
+    /**
+     * Start a new Player vs Computer game session on a board of a given size.
+     * Intiate private data field and notify listeners.
+     *
+     * @param boardSize rows and columns of the board, see BOARD_SIZES
+     * @throws IllegalArgumentException if the size is not supported
+     */
+    public void newPvC(int boardSize) {
+        newGame(boardSize, false);
     }
 
     /**
-     * Make the AI move; make the move that gives most point using the
-     * setBoard(int row, int col) method.
+     * Make the AI move; find the move with the engine of this Model and make
+     * it using the setBoard(int row, int col) method. Nothing happens if there
+     * is no legal move.
      */
     public void computerMove() {
-        new AI(this).move();
+        int move = getEngine().bestMove(this, null);
+        if (move >= 0) {
+            setBoard(move / size, move % size);
+        }
     }
 
     /**
-     * Check if somebody won.
+     * Find the AI move with an engine without making it. If the move was found
+     * while pondering it is returned at once. May be called from a background
+     * thread while the board is locked with setComputerThinking(true). The
+     * move is stopped by stopping the engine, see createEngine.
+     *
+     * @param e the engine, of its own for this move
+     * @param listener listener for search progress, or null
+     * @return the move as (row * getSize() + col), -1 if there is no legal
+     * move
+     */
+    public int findComputerMove(Engine e, SearchListener listener) {
+        long start = System.nanoTime();
+        Ponder p;
+        synchronized (ponderLock) {
+            p = ponder;
+            ponder = null;
+        }
+        if (p != null) {
+            p.stop();
+            p.await();
+            int i = p.find(white, black);
+            if (i >= 0) {
+                computerNodes = p.getNodes(i);
+                computerTime = (System.nanoTime() - start) / 1000000;
+                return p.getAnswer(i);
+            }
+        }
+        int move = e.bestMove(this, listener);
+        computerNodes = e.getNodes();
+        computerTime = (System.nanoTime() - start) / 1000000;
+        return move;
+    }
+
+    /**
+     * Create an engine of the kind of the engine of this Model, for one
+     * computer move that may be stopped. A stopped engine stays stopped, and
+     * the searches of two moves never share one. An engine that is not
+     * registered in Engines is returned itself.
+     *
+     * @return a new engine, see Engines.create
+     */
+    public Engine createEngine() {
+        Engine e = getEngine();
+        try {
+            return Engines.create(e.getName());
+        } catch (IllegalArgumentException ex) {
+            return e; // not a registered engine
+        }
+    }
+
+    /**
+     * Ponder: search on the player's time for the computer answers to the
+     * likely moves of the player, for findComputerMove to return at once.
+     * Runs until stopped with stopPondering, taken over by findComputerMove
+     * or done. Nothing happens if cancelled is set or pondering is disabled,
+     * while the computer is thinking, or unless the player is to move against
+     * the computer on the ROWS x COLS board. Called from a background thread,
+     * with a snapshot taken on the thread that changes the Model.
+     *
+     * @param position the board state to ponder from, see getSnapshot
+     * @param cancelled set before stopPondering to cancel a ponder that has
+     * not started yet
+     */
+    public void ponder(ModelSnapshot position, AtomicBoolean cancelled) {
+        if (position.getPvP() || !position.getGameStarted()
+                || position.getSize() != ROWS || position.somebodyWon()) {
+            return;
+        }
+        Engine e;
+        try {
+            e = Engines.create(getEngine().getName()); // one per Ponder
+        } catch (IllegalArgumentException ex) {
+            return; // not a registered engine
+        }
+        Ponder p;
+        synchronized (ponderLock) {
+            if (cancelled.get() || !ponderEnabled || ponder != null
+                    || computerThinking) {
+                return;
+            }
+            p = new Ponder(this, position, e);
+            ponder = p;
+        }
+        p.run();
+    }
+
+    /**
+     * Stop pondering, discarding what was found. Does not wait for the
+     * pondering search to return.
+     */
+    public void stopPondering() {
+        Ponder p;
+        synchronized (ponderLock) {
+            p = ponder;
+            ponder = null;
+        }
+        if (p != null) {
+            p.stop();
+        }
+    }
+
+    /**
+     * Add a listener called on the thread that changes this Model.
+     *
+     * @param l the listener
+     */
+    public void addListener(ModelListener l) {
+        bus.addListener(l, EventBus.DIRECT);
+    }
+
+    /**
+     * Add a listener called on an Executor of its own, e.g. the event dispatch
+     * thread or a single thread executor. The thread changing this Model does
+     * not wait for the listener.
+     *
+     * @param l the listener
+     * @param e the Executor
+     */
+    public void addListener(ModelListener l, Executor e) {
+        bus.addListener(l, e);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param l the listener
+     */
+    public void removeListener(ModelListener l) {
+        bus.removeListener(l);
+    }
+
+    /**
+     * Get an immutable snapshot of the current state of this Model. Must be
+     * called on the thread that changes this Model; other threads get
+     * snapshots from a ModelListener.
+     *
+     * @return the snapshot
+     */
+    public ModelSnapshot getSnapshot() {
+        return new ModelSnapshot(this, BoardChange.NONE);
+    }
+
+    /**
+     * Check if somebody won, i.e. the game is finished because neither player
+     * has a legal move. This covers a full board and a wiped-out color.
      *
      * @return true if somebody won, false otherwise
      */
     public boolean somebodyWon() {
-        return (whitePoints == 0 || blackPoints == 0
-                || whitePoints + blackPoints == ROWS * COLS);
+        if (geometry != null) {
+            long[] w = wideWhite, b = wideBlack;
+            return !geometry.moves(w, b, wideMoves, wideTmp)
+                    && !geometry.moves(b, w, wideMoves, wideTmp);
+        }
+        return Bitboard.moves(white, black) == 0
+                && Bitboard.moves(black, white) == 0;
+    }
+
+    /**
+     * Take back the last move, and the pass that followed it, and notify
+     * listeners. The move can be redone until a new move is made. Each step
+     * restores the flipped tokens from the move history, so the game is never
+     * replayed.
+     *
+     * @return true if a move was taken back, false if there is none or the
+     * computer is thinking
+     */
+    public boolean undo() {
+        return moveCount > 0 && jumpTo(moveList[moveCount - 1] == pass
+                ? moveCount - 2 : moveCount - 1);
+    }
+
+    /**
+     * Make the next move of the move history again, and the pass that followed
+     * it, and notify listeners.
+     *
+     * @return true if a move was made, false if there is none or the computer
+     * is thinking
+     */
+    public boolean redo() {
+        return moveCount < historySize && jumpTo(moveCount + 1);
+    }
+
+    /**
+     * Go to the position after a number of plies of the move history and
+     * notify listeners. A position where the player to move has to pass is
+     * skipped in favour of the position after the pass. Each ply costs a
+     * constant time.
+     *
+     * @param ply number of plies, from 0 to getHistorySize()
+     * @return true if the position changed, false if it did not or the
+     * computer is thinking
+     */
+    public boolean jumpTo(int ply) {
+        long oldWhite = white, oldBlack = black;
+        long[] oldWideWhite = copy(wideWhite), oldWideBlack = copy(wideBlack);
+        if (ply < 0 || ply > historySize) {
+            throw new IndexOutOfBoundsException("ply: " + ply);
+        }
+        if (ply < historySize && moveList[ply] == pass) {
+            ply++;
+        }
+        if (computerThinking || ply == moveCount) {
+            return false;
+        }
+
+        // A finished game has whose turn toggled back, see setBoard
+        if (boardLocked && moveCount > 0) {
+            whitesTurn = !whitesTurn;
+        }
+        while (moveCount > ply) {
+            int move = moveList[--moveCount];
+            if (move == pass) {
+                makePass();
+            } else if (geometry != null) {
+                unmakeWideMove(move, wideFlipList[moveCount]);
+            } else {
+                unmakeMove(move, flipList[moveCount]);
+            }
+        }
+        while (moveCount < ply) {
+            int move = moveList[moveCount];
+            if (move == pass) {
+                makePass();
+            } else if (geometry != null) {
+                makeWideMove(move, wideFlipList[moveCount]);
+            } else {
+                makeMove(move, flipList[moveCount]);
+            }
+            moveCount++;
+        }
+
+        passed = moveCount > 0 && moveList[moveCount - 1] == pass;
+        lastMove = moveCount == 0 ? -1 : moveList[moveCount - (passed ? 2 : 1)];
+        boardLocked = somebodyWon();
+        if (boardLocked) {
+            whitesTurn = !whitesTurn;
+        }
+
+        // Notify the View
+        publish(changeSince(oldWhite, oldBlack, oldWideWhite, oldWideBlack));
+        return true;
     }
 
     //--------------------------------------------------------------------------
@@ -132,11 +432,88 @@ public class Model extends Observable {
      * black token
      */
     public int getBoard(int row, int col) {
-        if (!new Index(row, col).isValid()) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
             throw new ArrayIndexOutOfBoundsException("row: " + row
                     + ", col = " + col);
         }
-        return board[row][col];
+        if (geometry != null) {
+            int square = row * size + col;
+            if (Geometry.get(wideWhite, square)) {
+                return WHITE;
+            }
+            if (Geometry.get(wideBlack, square)) {
+                return BLACK;
+            }
+            return EMPTY;
+        }
+        long bit = Bitboard.bit(row, col);
+        if ((white & bit) != 0) {
+            return WHITE;
+        }
+        if ((black & bit) != 0) {
+            return BLACK;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Get the legal moves for whose turn it is, i.e. the empty cells where a
+     * token would flip at least one token. Bit (row * COLS + col) is set for
+     * each legal move. Only for the ROWS x COLS board, see isLegalMove.
+     *
+     * @return bitmask of the legal moves
+     * @throws IllegalStateException if the board is of another size
+     */
+    public long getLegalMoves() {
+        checkClassicBoard();
+        return whitesTurn ? Bitboard.moves(white, black)
+                : Bitboard.moves(black, white);
+    }
+
+    /**
+     * Check if a move is legal for whose turn it is.
+     *
+     * @param row row
+     * @param col column
+     * @return true if the move is legal, false otherwise
+     */
+    public boolean isLegalMove(int row, int col) {
+        if (geometry != null) {
+            getBoard(row, col); // check the bounds
+            return whitesTurn
+                    ? geometry.isLegal(wideWhite, wideBlack, row * size + col)
+                    : geometry.isLegal(wideBlack, wideWhite, row * size + col);
+        }
+        return getBoard(row, col) == EMPTY
+                && (getLegalMoves() & Bitboard.bit(row, col)) != 0;
+    }
+
+    /**
+     * Get if the opponent of whose turn it is had to pass after the last move,
+     * so that the same player moves again.
+     *
+     * @return true if the opponent passed, false otherwise
+     */
+    public boolean getPassed() {
+        return passed;
+    }
+
+    /**
+     * Get the last move made.
+     *
+     * @return the last move as (row * getSize() + col), -1 if none
+     */
+    public int getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Get the size of the board of the current game.
+     *
+     * @return number of rows and columns
+     */
+    public int getSize() {
+        return size;
     }
 
     /**
@@ -157,6 +534,15 @@ public class Model extends Observable {
         return whitesTurn;
     }
 
+    /**
+     * Get status for if the computer is thinking about a move.
+     *
+     * @return true if the computer is thinking, false otherwise
+     */
+    public boolean getComputerThinking() {
+        return computerThinking;
+    }
+
     /**
      * Get status for if Player vs Player game is ongoing.
      *
@@ -185,170 +571,861 @@ public class Model extends Observable {
     }
 
     /**
-     * Get the private data field of this Model.
+     * Get the maximum search depth for the computer.
+     *
+     * @return maximum search depth in plies, zero or less if unlimited
+     */
+    public int getSearchDepth() {
+        return searchDepth;
+    }
+
+    /**
+     * Get the time budget for a computer move.
+     *
+     * @return time budget in milliseconds, zero or less if unlimited
+     */
+    public long getSearchTime() {
+        return searchTime;
+    }
+
+    /**
+     * Get the node budget for a computer move.
+     *
+     * @return node budget, zero or less if unlimited
+     */
+    public long getSearchNodes() {
+        return searchNodes;
+    }
+
+    /**
+     * Get the number of threads used by the computer search.
+     *
+     * @return number of search threads
+     */
+    public int getSearchThreads() {
+        return searchPool == null ? 1 : searchPool.getParallelism();
+    }
+
+    /**
+     * Get the pool for parallel search.
+     *
+     * @return the pool, null for a single-threaded search
+     */
+    ForkJoinPool getSearchPool() {
+        return searchPool;
+    }
+
+    /**
+     * Get the memory cap of the transposition table.
+     *
+     * @return memory cap in megabytes
+     */
+    public int getHashSize() {
+        return hashSize;
+    }
+
+    /**
+     * Get the number of empty cells from which the computer solves the game
+     * exactly.
+     *
+     * @return number of empty cells, zero or less if never
+     */
+    public int getEndgameEmpties() {
+        return endgameEmpties;
+    }
+
+    /**
+     * Get the evaluator the computer scores board states with.
+     *
+     * @return the evaluator
+     */
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Get the engine that finds the computer moves. The Standard engine is
+     * created on first use unless another engine was set.
+     *
+     * @return the engine
+     */
+    public Engine getEngine() {
+        Engine e = engine;
+        if (e == null) {
+            synchronized (this) {
+                e = engine;
+                if (e == null) {
+                    e = Engines.create(Engines.STANDARD);
+                    engine = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Get the number of nodes searched for the last computer move, including
+     * the pondering search that found it.
+     *
+     * @return nodes searched
+     */
+    public long getComputerNodes() {
+        return computerNodes;
+    }
+
+    /**
+     * Get the time taken by the last findComputerMove, close to zero for a
+     * move found while pondering.
+     *
+     * @return time taken in milliseconds
+     */
+    public long getComputerTime() {
+        return computerTime;
+    }
+
+    /**
+     * Get if the computer ponders on the player's time.
+     *
+     * @return true if pondering is enabled
+     */
+    public boolean getPonderEnabled() {
+        synchronized (ponderLock) {
+            return ponderEnabled;
+        }
+    }
+
+    /**
+     * Get the opening book the computer plays from.
+     *
+     * @return the opening book, null if none
+     */
+    public OpeningBook getOpeningBook() {
+        return book;
+    }
+
+    /**
+     * Get the transposition table of this game, created on first use. May be
+     * called from any thread.
+     *
+     * @return the transposition table
+     */
+    TranspositionTable getTranspositionTable() {
+        TranspositionTable t = table;
+        if (t == null) {
+            synchronized (this) {
+                t = table;
+                if (t == null) {
+                    t = new TranspositionTable(hashSize);
+                    table = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Get the hash table of the endgame solver, created when first needed.
+     * May be called from any thread.
+     *
+     * @return the hash table
+     */
+    TranspositionTable getEndgameTable() {
+        TranspositionTable t = endgameTable;
+        if (t == null) {
+            synchronized (this) {
+                t = endgameTable;
+                if (t == null) {
+                    t = new TranspositionTable(Endgame.HASH_SIZE);
+                    endgameTable = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Get the number of plies played to the current position, moves and
+     * passes.
+     *
+     * @return number of plies
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Get the number of plies in the move history, including plies that were
+     * undone and can be redone.
      *
-     * @return the private data field of this Model
+     * @return number of plies
      */
-    public Object[] getPrivateDataField() {
-        return new Object[]{board, gameStarted, boardLocked, whitesTurn, PvP,
-            whitePoints, blackPoints};
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Get a ply from the move history.
+     *
+     * @param ply ply, from 0 to getHistorySize() - 1
+     * @return the move as (row * getSize() + col), or PASS on the ROWS x COLS
+     * board and (getSize() * getSize()) on a board of another size for a pass
+     */
+    public int getMove(int ply) {
+        if (ply < 0 || ply >= historySize) {
+            throw new IndexOutOfBoundsException("ply: " + ply);
+        }
+        return moveList[ply];
+    }
+
+    /**
+     * Get status for if the board is locked.
+     *
+     * @return true if the board is locked, false otherwise
+     */
+    boolean getBoardLocked() {
+        return boardLocked;
+    }
+
+    /**
+     * Get the bitboard of the white tokens, 0 on a board of another size than
+     * ROWS x COLS.
+     *
+     * @return bitboard of the white tokens
+     */
+    long getWhite() {
+        return white;
+    }
+
+    /**
+     * Get the bitboard of the black tokens, 0 on a board of another size than
+     * ROWS x COLS.
+     *
+     * @return bitboard of the black tokens
+     */
+    long getBlack() {
+        return black;
+    }
+
+    /**
+     * Get the Geometry of the board.
+     *
+     * @return the Geometry, null on the ROWS x COLS board
+     */
+    Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Get the bitset of the white tokens on a board of another size than
+     * ROWS x COLS. The bitset is changed in place by the moves.
+     *
+     * @return bitset of the white tokens, null on the ROWS x COLS board
+     */
+    long[] getWideWhite() {
+        return wideWhite;
+    }
+
+    /**
+     * Get the bitset of the black tokens on a board of another size than
+     * ROWS x COLS. The bitset is changed in place by the moves.
+     *
+     * @return bitset of the black tokens, null on the ROWS x COLS board
+     */
+    long[] getWideBlack() {
+        return wideBlack;
     }
 
     //--------------------------------------------------------------------------
     // Setters
     /**
      * Set value of board on specified row and column for whose turn it is,
-     * toggle whose turn and notify Observer. Flip tokens on board and update
-     * points. Lock the board if somebody won.
+     * toggle whose turn and notify listeners. Flip tokens on board and update
+     * points. If the opponent has no legal move it passes and the turn stays.
+     * Lock the board if somebody won. Refused for an illegal move and while
+     * the computer is thinking.
      *
      * @param row row
      * @param col column
      * @return true if set is succeded, otherwise false
      */
     public boolean setBoard(int row, int col) {
-        if (boardLocked || getBoard(row, col) != EMPTY) {
+        long oldWhite = white, oldBlack = black;
+        long[] oldWideWhite = copy(wideWhite), oldWideBlack = copy(wideBlack);
+        if (boardLocked || computerThinking || !isLegalMove(row, col)) {
             return false;
         }
 
-        // Check whose turn
-        int color = whitesTurn ? WHITE : BLACK;
-
-        // Set color
-        board[row][col] = color;
+        // Set color, flip tokens, update points and toggle whose turn
+        lastMove = row * size + col;
+        if (geometry != null) {
+            long[] flips = wideFlipList[moveCount];
+            if (whitesTurn) {
+                geometry.flips(wideWhite, wideBlack, lastMove, flips);
+            } else {
+                geometry.flips(wideBlack, wideWhite, lastMove, flips);
+            }
+            makeWideMove(lastMove, flips);
+        } else {
+            flipList[moveCount] = makeMove(lastMove);
+        }
+        moveList[moveCount++] = (short) lastMove;
 
-        // Retrive a list of tokens that should be flipped
-        ArrayList<Index> flipList = flipList(new Index(row, col), color);
+        // Toggle back if the opponent has to pass
+        passed = !hasLegalMove();
+        if (passed) {
+            whitesTurn = !whitesTurn;
+            flipList[moveCount] = 0;
+            moveList[moveCount++] = (short) pass;
 
-        // Flip tokens
-        for (Index flip : flipList) {
-            board[flip.getRow()][flip.getCol()] = color;
+            // Lock the board if somebody won
+            if (!hasLegalMove()) {
+                passed = false;
+                moveCount--;
+                boardLocked = true;
+            }
         }
+        historySize = moveCount; // a new move discards the undone ones
 
-        // Calculate and set points
-        int white = 0, black = 0;
-        for (int i = 0; i < ROWS; i++) {
-            for (int j = 0; j < COLS; j++) {
-                if (board[i][j] == WHITE) {
-                    white++;
-                }
-                if (board[i][j] == BLACK) {
-                    black++;
-                }
-            }
+        // Notify the View
+        publish(changeSince(oldWhite, oldBlack, oldWideWhite, oldWideBlack));
+        return true;
+    }
+
+    /**
+     * Set status for if the computer is thinking about a move and notify
+     * listeners. While the computer is thinking, setBoard is refused.
+     *
+     * @param thinking true if the computer is thinking, false otherwise
+     */
+    public void setComputerThinking(boolean thinking) {
+        computerThinking = thinking;
+
+        // Notify the View
+        publish(BoardChange.NONE);
+    }
+
+    /**
+     * Set the maximum search depth for the computer.
+     *
+     * @param depth maximum search depth in plies, zero or less for unlimited
+     */
+    public void setSearchDepth(int depth) {
+        searchDepth = depth;
+    }
+
+    /**
+     * Set the time budget for a computer move.
+     *
+     * @param millis time budget in milliseconds, zero or less for unlimited
+     */
+    public void setSearchTime(long millis) {
+        searchTime = millis;
+    }
+
+    /**
+     * Set the node budget for a computer move.
+     *
+     * @param nodes node budget, zero or less for unlimited
+     */
+    public void setSearchNodes(long nodes) {
+        searchNodes = nodes;
+    }
+
+    /**
+     * Set the number of threads used by the computer search. With more than one
+     * thread the search runs in a ForkJoinPool of that size.
+     *
+     * @param threads number of search threads
+     */
+    public void setSearchThreads(int threads) {
+        if (threads == getSearchThreads()) {
+            return;
         }
-        whitePoints = white;
-        blackPoints = black;
+        if (searchPool != null) {
+            searchPool.shutdown();
+        }
+        searchPool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
 
-        // Lock the board if somebody won
-        if (somebodyWon()) {
-            boardLocked = true;
+    /**
+     * Set the memory cap of the transposition table. The table is reallocated
+     * on its next use.
+     *
+     * @param megabytes memory cap in megabytes
+     */
+    public void setHashSize(int megabytes) {
+        synchronized (this) {
+            hashSize = megabytes;
+            table = null;
         }
+    }
 
-        // Toggle whose turn
-        whitesTurn = !whitesTurn;
+    /**
+     * Set the number of empty cells from which the computer solves the game
+     * exactly instead of searching within the search limits. An exact solve
+     * is not bounded by the limits and takes about five times longer for each
+     * two more empty cells. At most 32.
+     *
+     * @param empties number of empty cells, zero or less for never
+     */
+    public void setEndgameEmpties(int empties) {
+        endgameEmpties = empties;
+    }
 
-        // Notify the View
-        setChanged();
-        notifyObservers();
-        return true;
+    /**
+     * Set the evaluator the computer scores board states with. It is shared
+     * between the threads of the search pool.
+     *
+     * @param e the evaluator
+     */
+    public void setEvaluator(Evaluator e) {
+        if (e == null) {
+            throw new NullPointerException("evaluator");
+        }
+        evaluator = e;
     }
 
     /**
-     * Set the private data field of this Model and notify Observer.
+     * Set the engine that finds the computer moves, see Engines. The search
+     * limits and endgame threshold of this Model apply to the Standard engine
+     * only. Must not be changed while the computer is thinking.
      *
-     * @param objects the new private private data field for this Model
-     * @throws java.lang.ClassNotFoundException if set fail
+     * @param e the engine
      */
-    public void setPrivateDataField(Object[] objects)
-            throws ClassNotFoundException {
-        try {
-            board = (int[][]) objects[0];
-            gameStarted = (boolean) objects[1];
-            boardLocked = (boolean) objects[2];
-            whitesTurn = (boolean) objects[3];
-            PvP = (boolean) objects[4];
-            whitePoints = (int) objects[5];
-            blackPoints = (int) objects[6];
-        } catch (Exception ex) {
-            throw new ClassNotFoundException();
+    public void setEngine(Engine e) {
+        if (e == null) {
+            throw new NullPointerException("engine");
+        }
+        synchronized (this) {
+            engine = e;
+        }
+    }
+
+    /**
+     * Set if the computer ponders on the player's time. Disabling stops
+     * pondering.
+     *
+     * @param enabled true to enable pondering
+     */
+    public void setPonderEnabled(boolean enabled) {
+        synchronized (ponderLock) {
+            ponderEnabled = enabled;
+        }
+        if (!enabled) {
+            stopPondering();
         }
-        // Notify the View
-        setChanged();
-        notifyObservers();
+    }
+
+    /**
+     * Set the opening book the computer plays from. A move is taken from the
+     * book, when the board state is in it, before any search.
+     *
+     * @param b the opening book, null for none
+     */
+    public void setOpeningBook(OpeningBook b) {
+        book = b;
     }
 
     //--------------------------------------------------------------------------
     // Helper methods
     /**
-     * Return a Index list of tokens that should be flipped for move to a
-     * specified Index and color of the token.
+     * Publish a snapshot of the current state to the listeners.
      *
-     * @param i index
-     * @param color the color
-     * @return a Index list of tokens that should be flipped for i and color
-     */
-    ArrayList<Index> flipList(Index i, int color) {
-        // Traverse all directions, one at a time. If valid placement add
-        // candidates if opposite color, when encounter the same color add all
-        // candidates to a fliplist i.e. tokens that will be flipped.
-        ArrayList<Index> flipList = new ArrayList();
-        for (Direction dir : Direction.values()) {
-            Index next = new Index(i.getRow(), i.getCol());
-            ArrayList<Index> candidates = new ArrayList();
-            while (true) {
-                next = next(next, dir);
-                if (!next.isValid()) {
-                    break;
-                }
-                if (getBoard(next.getRow(), next.getCol()) == EMPTY) {
-                    break;
-                }
-                if (getBoard(next.getRow(), next.getCol()) == color) {
-                    flipList.addAll(candidates);
-                    break;
-                }
-                candidates.add(next);
+     * @param change the change that led to the current state
+     */
+    private void publish(BoardChange change) {
+        bus.publish(new ModelSnapshot(this, change));
+    }
+
+    /**
+     * Start a new game session and notify listeners.
+     *
+     * @param boardSize rows and columns of the board
+     * @param pvp true for Player vs Player, false for Player vs Computer
+     */
+    private void newGame(int boardSize, boolean pvp) {
+        int oldSize = size;
+        long oldWhite = white, oldBlack = black;
+        long[] oldWideWhite = copy(wideWhite), oldWideBlack = copy(wideBlack);
+        setSize(boardSize);
+        if (geometry != null) {
+            geometry.start(wideWhite, wideBlack);
+        } else {
+            white = Bitboard.START_WHITE;
+            black = Bitboard.START_BLACK;
+        }
+        gameStarted = true;
+        boardLocked = false;
+        computerThinking = false;
+        lastMove = -1;
+        passed = false;
+        moveCount = 0;
+        historySize = 0;
+        whitesTurn = true;
+        PvP = pvp;
+        whitePoints = 2;
+        blackPoints = 2;
+        clearTranspositionTable();
+
+        // Notify the View
+        publish(changeSince(oldSize, oldWhite, oldBlack, oldWideWhite,
+                oldWideBlack));
+    }
+
+    /**
+     * Set the size of the board and allocate the move history for it, if the
+     * size changes. The ROWS x COLS board is kept in the bitboards white and
+     * black, any other in the bitsets wideWhite and wideBlack, which are
+     * cleared.
+     *
+     * @param boardSize rows and columns of the board
+     * @throws IllegalArgumentException if the size is not supported
+     */
+    private void setSize(int boardSize) {
+        if (boardSize == size) {
+            return;
+        }
+        Geometry g = boardSize == ROWS ? null : Geometry.of(boardSize);
+        int plies = Math.max(MAX_PLIES, 2 * boardSize * boardSize);
+        geometry = g;
+        size = boardSize;
+        pass = boardSize * boardSize;
+        moveList = new short[plies];
+        flipList = new long[plies];
+        white = 0;
+        black = 0;
+        if (g == null) {
+            wideWhite = null;
+            wideBlack = null;
+            wideFlipList = null;
+            wideMoves = null;
+            wideTmp = null;
+        } else {
+            wideWhite = new long[g.getWords()];
+            wideBlack = new long[g.getWords()];
+            wideFlipList = new long[plies][g.getWords()];
+            wideMoves = new long[g.getWords()];
+            wideTmp = new long[g.getWords()];
+        }
+    }
+
+    /**
+     * Return the change of the board since a board state of the same size.
+     *
+     * @param oldWhite bitboard of the white tokens before
+     * @param oldBlack bitboard of the black tokens before
+     * @param oldWideWhite bitset of the white tokens before, or null
+     * @param oldWideBlack bitset of the black tokens before, or null
+     * @return the change
+     */
+    private BoardChange changeSince(long oldWhite, long oldBlack,
+            long[] oldWideWhite, long[] oldWideBlack) {
+        return changeSince(size, oldWhite, oldBlack, oldWideWhite,
+                oldWideBlack);
+    }
+
+    /**
+     * Return the change of the board since a board state. After a change of
+     * size every token of the new board is a changed cell.
+     *
+     * @param oldSize rows and columns of the board before
+     * @param oldWhite bitboard of the white tokens before
+     * @param oldBlack bitboard of the black tokens before
+     * @param oldWideWhite bitset of the white tokens before, or null
+     * @param oldWideBlack bitset of the black tokens before, or null
+     * @return the change
+     */
+    private BoardChange changeSince(int oldSize, long oldWhite, long oldBlack,
+            long[] oldWideWhite, long[] oldWideBlack) {
+        if (geometry == null) {
+            return oldSize == size
+                    ? BoardChange.between(oldWhite, oldBlack, white, black)
+                    : BoardChange.between(0, 0, white, black);
+        }
+        if (oldSize != size) {
+            oldWideWhite = new long[wideWhite.length];
+            oldWideBlack = new long[wideBlack.length];
+        }
+        return BoardChange.between(oldWideWhite, oldWideBlack, wideWhite,
+                wideBlack);
+    }
+
+    /**
+     * Return a copy of a bitset.
+     *
+     * @param b the bitset, or null
+     * @return the copy, null if b is null
+     */
+    private static long[] copy(long[] b) {
+        return b == null ? null : b.clone();
+    }
+
+    /**
+     * Check that the board is of ROWS x COLS cells.
+     *
+     * @throws IllegalStateException if the board is of another size
+     */
+    private void checkClassicBoard() {
+        if (geometry != null) {
+            throw new IllegalStateException("Not supported on a " + size
+                    + "x" + size + " board");
+        }
+    }
+
+    /**
+     * Check if the player whose turn it is has a legal move.
+     *
+     * @return true if there is a legal move
+     */
+    private boolean hasLegalMove() {
+        if (geometry != null) {
+            return whitesTurn
+                    ? geometry.moves(wideWhite, wideBlack, wideMoves, wideTmp)
+                    : geometry.moves(wideBlack, wideWhite, wideMoves, wideTmp);
+        }
+        return getLegalMoves() != 0;
+    }
+
+    /**
+     * Return a Model at another board state of a computer game, sharing the
+     * search settings, evaluator, opening book and hash tables of this Model,
+     * for an engine to search ahead. It has no move history and no listeners.
+     * The board is of ROWS x COLS cells.
+     *
+     * @param w bitboard of the white tokens
+     * @param b bitboard of the black tokens
+     * @param whiteToMove true if whites turn
+     * @return the Model
+     */
+    Model position(long w, long b, boolean whiteToMove) {
+        Model m = new Model();
+        m.white = w;
+        m.black = b;
+        m.whitesTurn = whiteToMove;
+        m.gameStarted = true;
+        m.whitePoints = Long.bitCount(w);
+        m.blackPoints = Long.bitCount(b);
+        m.searchDepth = searchDepth;
+        m.searchTime = searchTime;
+        m.searchNodes = searchNodes;
+        m.searchPool = searchPool;
+        m.table = getTranspositionTable();
+        m.hashSize = getHashSize();
+        m.endgameEmpties = endgameEmpties;
+        m.endgameTable = getEndgameTable();
+        m.book = book;
+        m.evaluator = evaluator;
+        return m;
+    }
+
+    /**
+     * Restore a complete game state, as read from a saved game, and notify
+     * listeners. The board is of ROWS x COLS cells.
+     *
+     * @param w bitboard of the white tokens
+     * @param b bitboard of the black tokens
+     * @param started true if a game is started
+     * @param locked true if the board is locked
+     * @param whiteToMove true if whites turn
+     * @param pvp true if Player vs Player
+     * @param pass true if the opponent passed after the last move
+     * @param moves move list, PASS for a pass
+     * @param count number of plies in the move list
+     */
+    void restore(long w, long b, boolean started, boolean locked,
+            boolean whiteToMove, boolean pvp, boolean pass, byte[] moves,
+            int count) {
+        int oldSize = size;
+        long oldWhite = white, oldBlack = black;
+        long[] oldWideWhite = copy(wideWhite), oldWideBlack = copy(wideBlack);
+        setSize(ROWS);
+        white = w;
+        black = b;
+        gameStarted = started;
+        boardLocked = locked;
+        whitesTurn = whiteToMove;
+        PvP = pvp;
+        passed = pass;
+        whitePoints = Long.bitCount(w);
+        blackPoints = Long.bitCount(b);
+        for (int i = 0; i < count; i++) {
+            moveList[i] = moves[i];
+        }
+        moveCount = count;
+        historySize = count;
+
+        // Rebuild the flipped tokens of the move history
+        long own = Bitboard.START_WHITE, opp = Bitboard.START_BLACK;
+        for (int i = 0; i < count; i++) {
+            long flips = 0;
+            if (moves[i] != PASS) {
+                flips = Bitboard.flips(own, opp, moves[i]);
+                own |= flips | (1L << moves[i]);
+                opp &= ~flips;
+            }
+            flipList[i] = flips;
+            long tmp = own;
+            own = opp;
+            opp = tmp;
+        }
+        lastMove = -1;
+        for (int i = count - 1; i >= 0 && lastMove < 0; i--) {
+            if (moves[i] != PASS) {
+                lastMove = moves[i];
             }
         }
-        return flipList;
+        computerThinking = false;
+        clearTranspositionTable();
+
+        // Notify the View
+        publish(changeSince(oldSize, oldWhite, oldBlack, oldWideWhite,
+                oldWideBlack));
+    }
+
+    /**
+     * Make a move in place for whose turn it is: set the token, flip tokens,
+     * update points and toggle whose turn. Unlike setBoard the move is not
+     * validated, passes are not handled and listeners are not notified, which
+     * makes it cheap enough for searching. Undo with unmakeMove.
+     *
+     * @param square square (row * COLS + col) of a legal move
+     * @return the undo record: a bitboard of the flipped tokens
+     */
+    long makeMove(int square) {
+        long flips = flips(square, whitesTurn ? WHITE : BLACK);
+        makeMove(square, flips);
+        return flips;
+    }
+
+    /**
+     * Make a move in place for whose turn it is, with the flipped tokens
+     * already known, e.g. from the move history.
+     *
+     * @param square square (row * COLS + col) of a legal move
+     * @param flips bitboard of the tokens the move flips
+     */
+    private void makeMove(int square, long flips) {
+        long placed = 1L << square;
+        int flipped = Long.bitCount(flips);
+        if (whitesTurn) {
+            white |= placed | flips;
+            black &= ~flips;
+            whitePoints += flipped + 1;
+            blackPoints -= flipped;
+        } else {
+            black |= placed | flips;
+            white &= ~flips;
+            blackPoints += flipped + 1;
+            whitePoints -= flipped;
+        }
+        whitesTurn = !whitesTurn;
     }
 
     /**
-     * Return Index (coordiates) for next cell in specified direction.
+     * Undo a move made with makeMove. Moves must be undone in the reverse
+     * order they were made.
      *
-     * @param i Index
-     * @param dir direction
-     * @return Index for next cell after i in direction dir
+     * @param square square (row * COLS + col) of the move
+     * @param flips the undo record returned by makeMove
      */
-    private Index next(Index i, Direction dir) {
-        switch (dir) {
-            // Up
-            case UP_LEFT:
-                return new Index(i.getRow() - 1, i.getCol() - 1);
-            case UP:
-                return new Index(i.getRow() - 1, i.getCol());
-            case UP_RIGHT:
-                return new Index(i.getRow() - 1, i.getCol() + 1);
+    void unmakeMove(int square, long flips) {
+        long placed = 1L << square;
+        int flipped = Long.bitCount(flips);
+        whitesTurn = !whitesTurn;
+        if (whitesTurn) {
+            white &= ~(placed | flips);
+            black |= flips;
+            whitePoints -= flipped + 1;
+            blackPoints += flipped;
+        } else {
+            black &= ~(placed | flips);
+            white |= flips;
+            blackPoints -= flipped + 1;
+            whitePoints += flipped;
+        }
+    }
 
-            // Right
-            case RIGHT:
-                return new Index(i.getRow(), i.getCol() + 1);
+    /**
+     * Make a move in place for whose turn it is on a board of another size
+     * than ROWS x COLS, with the flipped tokens already known.
+     *
+     * @param square square (row * size + col) of a legal move
+     * @param flips bitset of the tokens the move flips
+     */
+    private void makeWideMove(int square, long[] flips) {
+        long[] own = whitesTurn ? wideWhite : wideBlack;
+        long[] opp = whitesTurn ? wideBlack : wideWhite;
+        for (int w = 0; w < flips.length; w++) {
+            own[w] |= flips[w];
+            opp[w] &= ~flips[w];
+        }
+        Geometry.set(own, square);
+        int flipped = Geometry.count(flips);
+        if (whitesTurn) {
+            whitePoints += flipped + 1;
+            blackPoints -= flipped;
+        } else {
+            blackPoints += flipped + 1;
+            whitePoints -= flipped;
+        }
+        whitesTurn = !whitesTurn;
+    }
 
-            // Down
-            case DOWN_RIGHT:
-                return new Index(i.getRow() + 1, i.getCol() + 1);
-            case DOWN:
-                return new Index(i.getRow() + 1, i.getCol());
-            case DOWN_LEFT:
-                return new Index(i.getRow() + 1, i.getCol() - 1);
+    /**
+     * Undo a move made with makeWideMove.
+     *
+     * @param square square (row * size + col) of the move
+     * @param flips bitset of the tokens the move flipped
+     */
+    private void unmakeWideMove(int square, long[] flips) {
+        whitesTurn = !whitesTurn;
+        long[] own = whitesTurn ? wideWhite : wideBlack;
+        long[] opp = whitesTurn ? wideBlack : wideWhite;
+        for (int w = 0; w < flips.length; w++) {
+            own[w] &= ~flips[w];
+            opp[w] |= flips[w];
+        }
+        own[square >>> 6] &= ~(1L << square);
+        int flipped = Geometry.count(flips);
+        if (whitesTurn) {
+            whitePoints -= flipped + 1;
+            blackPoints += flipped;
+        } else {
+            blackPoints -= flipped + 1;
+            whitePoints += flipped;
+        }
+    }
 
-            // Left
-            case LEFT:
-                return new Index(i.getRow(), i.getCol() - 1);
+    /**
+     * Pass in place for whose turn it is, i.e. toggle whose turn. A pass is
+     * undone by passing again.
+     */
+    void makePass() {
+        whitesTurn = !whitesTurn;
+    }
 
-            default:
-                throw new IllegalArgumentException(
-                        "Invalid Direction: " + dir);
+    /**
+     * Remove the positions of the previous game from the transposition table.
+     */
+    private void clearTranspositionTable() {
+        TranspositionTable t = table;
+        if (t != null) {
+            t.clear();
         }
     }
+
+    /**
+     * Return a bitboard of the tokens that should be flipped for a move to a
+     * specified square (row * COLS + col) and color of the token. Nothing is
+     * allocated.
+     *
+     * @param square square
+     * @param color the color
+     * @return bitboard of the tokens that should be flipped, 0 if none
+     */
+    long flips(int square, int color) {
+        return color == WHITE
+                ? Bitboard.flips(white, black, square)
+                : Bitboard.flips(black, white, square);
+    }
 }
@@ -0,0 +1,18 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Listener for the changes of a Model. Called on the Executor the listener was
+ * added with, one ModelSnapshot at a time and in the order of the changes.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public interface ModelListener {
+
+    /**
+     * Invoked after the Model changed.
+     *
+     * @param snapshot the state of the Model after the change
+     */
+    void modelChanged(ModelSnapshot snapshot);
+}
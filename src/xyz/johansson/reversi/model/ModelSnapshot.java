@@ -0,0 +1,228 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Immutable state of a Model after a change, published to the ModelListeners
+ * of the Model. A snapshot may be read on any thread while the Model moves
+ * on.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class ModelSnapshot {
+
+    private final int size;
+    private final long white;
+    private final long black;
+    private final long[] wideWhite; // null on the Model.ROWS x COLS board
+    private final long[] wideBlack;
+    private final boolean gameStarted;
+    private final boolean boardLocked;
+    private final boolean whitesTurn;
+    private final boolean PvP;
+    private final boolean passed;
+    private final boolean computerThinking;
+    private final int lastMove;
+    private final int moveCount;
+    private final int whitePoints;
+    private final int blackPoints;
+    private final boolean gameOver; // somebody won
+    private final BoardChange change;
+
+    /**
+     * Construct a snapshot of the current state of a Model.
+     *
+     * @param m the Model
+     * @param change the change that led to this state
+     */
+    ModelSnapshot(Model m, BoardChange change) {
+        this.size = m.getSize();
+        this.white = m.getWhite();
+        this.black = m.getBlack();
+        this.wideWhite = m.getWideWhite() == null ? null
+                : m.getWideWhite().clone();
+        this.wideBlack = m.getWideBlack() == null ? null
+                : m.getWideBlack().clone();
+        this.gameStarted = m.getGameStarted();
+        this.boardLocked = m.getBoardLocked();
+        this.whitesTurn = m.getWhitesTurn();
+        this.PvP = m.getPvP();
+        this.passed = m.getPassed();
+        this.computerThinking = m.getComputerThinking();
+        this.lastMove = m.getLastMove();
+        this.moveCount = m.getMoveCount();
+        this.whitePoints = m.getWhitePoints();
+        this.blackPoints = m.getBlackPoints();
+        this.gameOver = m.somebodyWon();
+        this.change = change;
+    }
+
+    /**
+     * Get the change of the board that led to this state.
+     *
+     * @return the change, BoardChange.NONE if the board did not change
+     */
+    public BoardChange getChange() {
+        return change;
+    }
+
+    /**
+     * Get value of board on specified row and column.
+     *
+     * @param row row
+     * @param col column
+     * @return Model.EMPTY, Model.WHITE or Model.BLACK
+     */
+    public int getBoard(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
+            throw new ArrayIndexOutOfBoundsException("row: " + row
+                    + ", col = " + col);
+        }
+        if (wideWhite != null) {
+            int square = row * size + col;
+            if (Geometry.get(wideWhite, square)) {
+                return Model.WHITE;
+            }
+            if (Geometry.get(wideBlack, square)) {
+                return Model.BLACK;
+            }
+            return Model.EMPTY;
+        }
+        long bit = Bitboard.bit(row, col);
+        if ((white & bit) != 0) {
+            return Model.WHITE;
+        }
+        if ((black & bit) != 0) {
+            return Model.BLACK;
+        }
+        return Model.EMPTY;
+    }
+
+    /**
+     * Get the size of the board.
+     *
+     * @return number of rows and columns
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the bitboard of the white tokens, bit (row * Model.COLS + col), 0 on
+     * a board of another size.
+     *
+     * @return bitboard of the white tokens
+     */
+    public long getWhite() {
+        return white;
+    }
+
+    /**
+     * Get the bitboard of the black tokens, bit (row * Model.COLS + col), 0 on
+     * a board of another size.
+     *
+     * @return bitboard of the black tokens
+     */
+    public long getBlack() {
+        return black;
+    }
+
+    /**
+     * Check if somebody won, see Model.somebodyWon. Found when the snapshot
+     * was taken.
+     *
+     * @return true if somebody won, false otherwise
+     */
+    public boolean somebodyWon() {
+        return gameOver;
+    }
+
+    /**
+     * Get status for if a game session is started.
+     *
+     * @return true if a game session is started, false otherwise
+     */
+    public boolean getGameStarted() {
+        return gameStarted;
+    }
+
+    /**
+     * Get status for if the board is locked.
+     *
+     * @return true if the board is locked, false otherwise
+     */
+    public boolean getBoardLocked() {
+        return boardLocked;
+    }
+
+    /**
+     * Get status for whose turn it is.
+     *
+     * @return true if whites turn, false otherwise
+     */
+    public boolean getWhitesTurn() {
+        return whitesTurn;
+    }
+
+    /**
+     * Get status for if the game session is Player vs Player.
+     *
+     * @return true if Player vs Player, false otherwise
+     */
+    public boolean getPvP() {
+        return PvP;
+    }
+
+    /**
+     * Get status for if the opponent passed after the last move.
+     *
+     * @return true if the opponent passed
+     */
+    public boolean getPassed() {
+        return passed;
+    }
+
+    /**
+     * Get status for if the computer is thinking about a move.
+     *
+     * @return true if the computer is thinking, false otherwise
+     */
+    public boolean getComputerThinking() {
+        return computerThinking;
+    }
+
+    /**
+     * Get the last move.
+     *
+     * @return (row * getSize() + col) of the last move, -1 if none
+     */
+    public int getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Get the number of plies played, moves and passes.
+     *
+     * @return number of plies
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Get the points of white.
+     *
+     * @return number of white tokens
+     */
+    public int getWhitePoints() {
+        return whitePoints;
+    }
+
+    /**
+     * Get the points of black.
+     *
+     * @return number of black tokens
+     */
+    public int getBlackPoints() {
+        return blackPoints;
+    }
+}
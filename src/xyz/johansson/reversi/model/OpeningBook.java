@@ -0,0 +1,106 @@
+package xyz.johansson.reversi.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Opening book: a file mapping the Zobrist hash of a board state to the move
+ * to play. The file is a header (magic number and entry count) followed by
+ * entries sorted by hash:
+ * <pre>
+ * hash    8 bytes, Zobrist hash of the board state and the side to move
+ * move    1 byte, (row * Model.COLS + col)
+ * games   1 byte, number of games behind the move, at most 255
+ * </pre>
+ * The file is memory mapped and looked up by binary search, so a lookup reads
+ * a few pages of the file and allocates nothing. Books are created with
+ * OpeningBookBuilder.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class OpeningBook implements Closeable {
+
+    static final int MAGIC = 0x52565342; // "RVSB"
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 10;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final int size;
+
+    /**
+     * Open an opening book and map it into memory.
+     *
+     * @param f the book file
+     * @throws java.io.IOException if the file cannot be read or is not a book
+     */
+    public OpeningBook(File f) throws IOException {
+        file = new RandomAccessFile(f, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            size = header.getInt(4);
+            if (header.getInt(0) != MAGIC || size < 0 || channel.size()
+                    != HEADER_SIZE + (long) size * ENTRY_SIZE) {
+                throw new IOException("Not a Reversi opening book");
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                    (long) size * ENTRY_SIZE);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the number of board states in the book.
+     *
+     * @return number of board states
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Look up the move for a board state.
+     *
+     * @param white bitboard of the white tokens
+     * @param black bitboard of the black tokens
+     * @param whitesTurn true if white is to move
+     * @return square (row * Model.COLS + col) of the move, -1 if the board
+     * state is not in the book
+     */
+    int probe(long white, long black, boolean whitesTurn) {
+        long hash = Zobrist.hash(white, black, whitesTurn);
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long key = map.getLong(mid * ENTRY_SIZE);
+            if (key < hash) {
+                low = mid + 1;
+            } else if (key > hash) {
+                high = mid - 1;
+            } else {
+                return map.get(mid * ENTRY_SIZE + 8);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Close the book. The mapping stays valid until garbage collected.
+     *
+     * @throws java.io.IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,416 @@
+package xyz.johansson.reversi.model;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds an OpeningBook from finished games: computer self-play, game lists
+ * in text form and GameArchive files. For every board state within the first
+ * plies of the games, the results of the moves played from it are counted, and
+ * the book keeps the move with the best average result among the moves played
+ * in enough games.
+ * <p>
+ * A game list has one game per line. The moves are the first field of the line
+ * made of moves only, written as column letter and row number as in the Arena
+ * result file, so Arena output can be used directly. Passes may be written as
+ * "--" or left out. Lines in the usual notation, where the first player owns
+ * d5 and e4, are recognized by their first move and mirrored.
+ * <p>
+ * Usage: java xyz.johansson.reversi.model.OpeningBookBuilder [-out FILE]
+ * [-plies N] [-min N] [-selfplay N] [-depth N] [-random N] [-seed N]
+ * [-threads N] [-games FILE] [-archive FILE], where -games and -archive may be
+ * given more than once.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class OpeningBookBuilder {
+
+    private int plies = 16; // depth of the book
+    private int minGames = 2; // games behind a move in the book
+    private final Map<Long, Position> positions = new TreeMap<>();
+    private final long[] hashes = new long[Model.MAX_PLIES];
+    private final int[] squares = new int[Model.MAX_PLIES];
+    private final boolean[] whiteMoved = new boolean[Model.MAX_PLIES];
+    private int games;
+    private int skipped;
+
+    /**
+     * Statistics of the moves played from a board state.
+     */
+    private static final class Position {
+
+        private int[] moves = new int[4];
+        private int[] games = new int[4];
+        private int[] score = new int[4]; // 2 per win and 1 per draw
+        private int size;
+
+        /**
+         * Count the result of a move.
+         *
+         * @param move square of the move
+         * @param points 2 for a win, 1 for a draw and 0 for a loss
+         */
+        void add(int move, int points) {
+            int i = 0;
+            while (i < size && moves[i] != move) {
+                i++;
+            }
+            if (i == size) {
+                if (size == moves.length) {
+                    moves = Arrays.copyOf(moves, size * 2);
+                    games = Arrays.copyOf(games, size * 2);
+                    score = Arrays.copyOf(score, size * 2);
+                }
+                moves[size++] = move;
+            }
+            games[i]++;
+            score[i] += points;
+        }
+
+        /**
+         * Compare the average results of two moves, ties broken by the
+         * number of games.
+         *
+         * @param i index of a move
+         * @param j index of another move
+         * @return true if move i is better than move j
+         */
+        boolean better(int i, int j) {
+            long a = (long) score[i] * games[j];
+            long b = (long) score[j] * games[i];
+            return a > b || a == b && games[i] > games[j];
+        }
+    }
+
+    /**
+     * Build a book.
+     *
+     * @param args see the class documentation
+     * @throws java.lang.Exception if a file cannot be read or written or a
+     * game fails
+     */
+    public static void main(String[] args) throws Exception {
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        String out = "reversi.book";
+        int selfPlay = 0, depth = 6, randomMoves = 6;
+        long seed = 2015;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> gameLists = new ArrayList<>();
+        List<String> archives = new ArrayList<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "-out":
+                    out = value;
+                    break;
+                case "-plies":
+                    builder.plies = Math.min(Integer.parseInt(value),
+                            Model.MAX_PLIES);
+                    break;
+                case "-min":
+                    builder.minGames = Integer.parseInt(value);
+                    break;
+                case "-selfplay":
+                    selfPlay = Integer.parseInt(value);
+                    break;
+                case "-depth":
+                    depth = Integer.parseInt(value);
+                    break;
+                case "-random":
+                    randomMoves = Integer.parseInt(value);
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "-games":
+                    gameLists.add(value);
+                    break;
+                case "-archive":
+                    archives.add(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Invalid option: " + args[i]);
+            }
+        }
+
+        for (String path : gameLists) {
+            builder.addGameList(new File(path));
+        }
+        for (String path : archives) {
+            builder.addArchive(new File(path));
+        }
+        if (selfPlay > 0) {
+            builder.addSelfPlay(selfPlay, depth, randomMoves, seed, threads);
+        }
+        int size = builder.write(new File(out));
+        System.out.printf("%d games, %d skipped, %d board states in %s%n",
+                builder.games, builder.skipped, size, out);
+    }
+
+    /**
+     * Add the games of a game list.
+     *
+     * @param f the game list
+     * @throws java.io.IOException if the file cannot be read
+     */
+    void addGameList(File f) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(f))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                byte[] moves = parseGame(line);
+                if (moves != null) {
+                    addGame(moves, moves.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the finished games of a GameArchive.
+     *
+     * @param f the archive
+     * @throws java.io.IOException if the file cannot be read
+     */
+    void addArchive(File f) throws IOException {
+        try (GameArchive archive = new GameArchive(f)) {
+            byte[] moves = new byte[Model.MAX_PLIES];
+            for (long game = 0; game < archive.size(); game++) {
+                int count;
+                try {
+                    count = archive.getMoveCount(game);
+                } catch (IOException ex) {
+                    skipped++; // corrupt record
+                    continue;
+                }
+                for (int ply = 0; ply < count; ply++) {
+                    moves[ply] = (byte) archive.getMove(game, ply);
+                }
+                addGame(moves, count);
+            }
+        }
+    }
+
+    /**
+     * Play games computer vs computer and add them. Each game starts with a
+     * number of random moves so that the games differ.
+     *
+     * @param count number of games
+     * @param depth search depth of the computer
+     * @param randomMoves number of random moves at the start of each game
+     * @param seed seed for the random moves
+     * @param threads number of games played at the same time
+     * @throws java.lang.Exception if a game fails
+     */
+    void addSelfPlay(int count, final int depth, final int randomMoves,
+            final long seed, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Model>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final int game = i;
+                results.add(pool.submit(new Callable<Model>() {
+                    @Override
+                    public Model call() {
+                        return play(depth, randomMoves,
+                                new Random(seed + game));
+                    }
+                }));
+            }
+            byte[] moves = new byte[Model.MAX_PLIES];
+            for (Future<Model> result : results) {
+                Model model = result.get();
+                for (int ply = 0; ply < model.getMoveCount(); ply++) {
+                    moves[ply] = (byte) model.getMove(ply);
+                }
+                addGame(moves, model.getMoveCount());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Play one game computer vs computer.
+     *
+     * @param depth search depth of the computer
+     * @param randomMoves number of random moves at the start of the game
+     * @param random the Random
+     * @return the Model of the finished game
+     */
+    private static Model play(int depth, int randomMoves, Random random) {
+        Model model = new Model();
+        model.newPvP(); // both sides are driven from here
+        model.setSearchDepth(depth);
+        model.setSearchTime(0);
+        for (int ply = 0; !model.somebodyWon(); ply++) {
+            long legal = model.getLegalMoves();
+            if (ply < randomMoves) {
+                for (int k = random.nextInt(Long.bitCount(legal)); k > 0; k--) {
+                    legal &= legal - 1;
+                }
+                int move = Long.numberOfTrailingZeros(legal);
+                model.setBoard(move / Model.COLS, move % Model.COLS);
+            } else {
+                model.computerMove();
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Replay a game from the starting position and count the result of each
+     * move within the book depth. Passes are made when needed, so they may be
+     * left out of the move list. Games that are illegal or unfinished are
+     * skipped.
+     *
+     * @param moves the move list, PASS for a pass
+     * @param count number of plies
+     */
+    synchronized void addGame(byte[] moves, int count) {
+        long white = Bitboard.START_WHITE, black = Bitboard.START_BLACK;
+        boolean whitesTurn = true;
+        int n = 0; // moves within the book depth
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (move == Model.PASS) {
+                continue;
+            }
+            long own = whitesTurn ? white : black;
+            long opp = whitesTurn ? black : white;
+            if (Bitboard.moves(own, opp) == 0) { // pass
+                whitesTurn = !whitesTurn;
+                long tmp = own;
+                own = opp;
+                opp = tmp;
+            }
+            if (move < 0 || move >= Model.PASS
+                    || (Bitboard.moves(own, opp) & (1L << move)) == 0) {
+                skipped++;
+                return;
+            }
+            if (n < plies) {
+                hashes[n] = Zobrist.hash(white, black, whitesTurn);
+                squares[n] = move;
+                whiteMoved[n++] = whitesTurn;
+            }
+            long flips = Bitboard.flips(own, opp, move);
+            own |= flips | (1L << move);
+            opp &= ~flips;
+            white = whitesTurn ? own : opp;
+            black = whitesTurn ? opp : own;
+            whitesTurn = !whitesTurn;
+        }
+        if (Bitboard.moves(white, black) != 0
+                || Bitboard.moves(black, white) != 0) {
+            skipped++; // unfinished
+            return;
+        }
+        games++;
+
+        // Count the result for the player of each move
+        int whiteScore = Integer.signum(Long.bitCount(white)
+                - Long.bitCount(black)) + 1;
+        for (int i = 0; i < n; i++) {
+            Position position = positions.get(hashes[i]);
+            if (position == null) {
+                position = new Position();
+                positions.put(hashes[i], position);
+            }
+            position.add(squares[i], whiteMoved[i] ? whiteScore
+                    : 2 - whiteScore);
+        }
+    }
+
+    /**
+     * Write the book: for each board state, the move with the best average
+     * result among the moves played in at least the minimum number of games.
+     *
+     * @param f the book file
+     * @return number of board states in the book
+     * @throws java.io.IOException if the file cannot be written
+     */
+    int write(File f) throws IOException {
+        List<Long> keys = new ArrayList<>();
+        List<Integer> entries = new ArrayList<>(); // move << 8 | games
+        for (Map.Entry<Long, Position> entry : positions.entrySet()) {
+            Position position = entry.getValue();
+            int best = -1;
+            for (int i = 0; i < position.size; i++) {
+                if (position.games[i] >= minGames && (best < 0
+                        || position.better(i, best))) {
+                    best = i;
+                }
+            }
+            if (best >= 0) {
+                keys.add(entry.getKey());
+                entries.add(position.moves[best] << 8
+                        | Math.min(255, position.games[best]));
+            }
+        }
+
+        // The TreeMap iterates in the signed order OpeningBook searches in
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                out.writeLong(keys.get(i));
+                out.writeShort(entries.get(i));
+            }
+        }
+        return keys.size();
+    }
+
+    /**
+     * Parse a line of a game list.
+     *
+     * @param line the line
+     * @return the move list, without passes, or null if the line has no moves
+     */
+    static byte[] parseGame(String line) {
+        for (String field : line.trim().split("\\s+")) {
+            String moves = field.toLowerCase().replace("--", "");
+            if (moves.isEmpty() || !moves.matches("([a-h][1-8])+")) {
+                continue;
+            }
+            byte[] game = new byte[moves.length() / 2];
+            for (int i = 0; i < game.length; i++) {
+                int col = moves.charAt(2 * i) - 'a';
+                int row = moves.charAt(2 * i + 1) - '1';
+                game[i] = (byte) (row * Model.COLS + col);
+            }
+
+            // In the usual notation the board is upside down
+            long legal = Bitboard.moves(Bitboard.START_WHITE,
+                    Bitboard.START_BLACK);
+            if ((legal & (1L << game[0])) == 0) {
+                for (int i = 0; i < game.length; i++) {
+                    int row = Model.ROWS - 1 - game[i] / Model.COLS;
+                    game[i] = (byte) (row * Model.COLS + game[i] % Model.COLS);
+                }
+            }
+            return game;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,364 @@
+package xyz.johansson.reversi.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Evaluator summing precomputed tables of board patterns. A pattern is a fixed
+ * set of cells, and each of its states is given a base-3 index: digit i is 0
+ * for an empty cell i, 1 for a token of the player to move and 2 for a token
+ * of the opponent. The patterns are
+ * <ul>
+ * <li>the four edges, 8 cells each,</li>
+ * <li>the four 3x3 corner blocks, 9 cells each,</li>
+ * <li>the two long diagonals, 8 cells each,</li>
+ * </ul>
+ * plus a mobility table indexed by the number of legal moves.
+ * <p>
+ * Symmetric instances of a pattern share one table. They are read from the
+ * board flipped vertically, horizontally or both, so that every instance is
+ * found at the same cells, and the cells of a line are gathered into a byte
+ * with a multiplication. An evaluation is then a few bit operations and table
+ * lookups per pattern, and allocates nothing.
+ * <p>
+ * The default tables give each cell a classic positional weight, spread over
+ * the patterns covering it, and only count a cell next to a corner against
+ * the player while the corner is empty. Tuned tables are made by Tuner and
+ * stored in a weight file: a 4 byte magic number followed by the edge, corner,
+ * diagonal and mobility tables as 2 byte values.
+ * <p>
+ * A PatternEvaluator is immutable: the tables are private, copied when given
+ * and when taken, so one instance can be shared by any number of searches.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class PatternEvaluator implements Evaluator {
+
+    /**
+     * Number of states of an 8 cell pattern.
+     */
+    static final int LINE_STATES = 6561;
+
+    /**
+     * Number of states of a 9 cell pattern.
+     */
+    static final int BLOCK_STATES = 19683;
+
+    /**
+     * Size of the mobility table, more than the most legal moves possible.
+     */
+    static final int MOBILITY_SIZE = 64;
+
+    /**
+     * Number of table lookups of an evaluation, see features.
+     */
+    static final int FEATURES = 12;
+
+    private static final int MAGIC = 0x52565357; // "RVSW"
+
+    private static final long DIAGONAL = 0x8040201008040201L;
+    private static final long COLUMN_MAGIC = 0x0102040810204080L;
+    private static final int LIMIT = Search.WIN - 1;
+
+    /**
+     * Base-3 value of up to 9 bits: bit i becomes digit i.
+     */
+    private static final int[] BASE3 = new int[512];
+
+    /**
+     * Classic positional weights of the cells.
+     */
+    private static final int[] WEIGHTS = {
+        100, -20, 10, 5, 5, 10, -20, 100,
+        -20, -50, -2, -2, -2, -2, -50, -20,
+        10, -2, -1, -1, -1, -1, -2, 10,
+        5, -2, -1, -1, -1, -1, -2, 5,
+        5, -2, -1, -1, -1, -1, -2, 5,
+        10, -2, -1, -1, -1, -1, -2, 10,
+        -20, -50, -2, -2, -2, -2, -50, -20,
+        100, -20, 10, 5, 5, 10, -20, 100
+    };
+
+    static {
+        for (int b = 0; b < BASE3.length; b++) {
+            int v = 0;
+            for (int i = 8; i >= 0; i--) {
+                v = 3 * v + (b >>> i & 1);
+            }
+            BASE3[b] = v;
+        }
+    }
+
+    private final int[] edge;
+    private final int[] corner;
+    private final int[] diagonal;
+    private final int[] mobility;
+
+    /**
+     * Construct a PatternEvaluator with the default tables.
+     */
+    public PatternEvaluator() {
+        this(defaultTables());
+    }
+
+    /**
+     * Construct a PatternEvaluator with given tables. The tables are copied.
+     *
+     * @param edge table of the edges, LINE_STATES entries
+     * @param corner table of the corner blocks, BLOCK_STATES entries
+     * @param diagonal table of the diagonals, LINE_STATES entries
+     * @param mobility table of the number of legal moves, MOBILITY_SIZE
+     * entries
+     */
+    PatternEvaluator(int[] edge, int[] corner, int[] diagonal,
+            int[] mobility) {
+        this(new int[][]{edge.clone(), corner.clone(), diagonal.clone(),
+            mobility.clone()});
+    }
+
+    /**
+     * Construct a PatternEvaluator owning tables that nothing else refers to.
+     *
+     * @param tables edge, corner, diagonal and mobility tables
+     */
+    private PatternEvaluator(int[][] tables) {
+        this.edge = tables[0];
+        this.corner = tables[1];
+        this.diagonal = tables[2];
+        this.mobility = tables[3];
+    }
+
+    /**
+     * Compute the default tables from the classic positional weights.
+     *
+     * @return edge, corner, diagonal and mobility tables
+     */
+    private static int[][] defaultTables() {
+        int[][] tables = emptyTables();
+        int[] edge = tables[0], corner = tables[1], diagonal = tables[2],
+                mobility = tables[3];
+
+        // Number of patterns covering each cell
+        int[] coverage = new int[Model.ROWS * Model.COLS];
+        for (int i = 0; i < coverage.length; i++) {
+            int row = i / Model.COLS, col = i % Model.COLS;
+            boolean rowEdge = row == 0 || row == Model.ROWS - 1;
+            boolean colEdge = col == 0 || col == Model.COLS - 1;
+            boolean inBlock = (row < 3 || row >= Model.ROWS - 3)
+                    && (col < 3 || col >= Model.COLS - 3);
+            boolean onDiagonal = row == col || row + col == Model.COLS - 1;
+            coverage[i] = (rowEdge ? 1 : 0) + (colEdge ? 1 : 0)
+                    + (inBlock ? 1 : 0) + (onDiagonal ? 1 : 0);
+        }
+
+        for (int index = 0; index < LINE_STATES; index++) {
+            double e = 0, d = 0;
+            for (int i = 0, v = index; i < 8; i++, v /= 3) {
+                int sign = sign(v % 3);
+                e += sign * (double) WEIGHTS[i] / coverage[i];
+                d += sign * (double) WEIGHTS[9 * i] / coverage[9 * i];
+            }
+            edge[index] = (int) Math.round(e);
+            diagonal[index] = (int) Math.round(d);
+        }
+        for (int index = 0; index < BLOCK_STATES; index++) {
+            double c = 0;
+            boolean cornerEmpty = index % 3 == 0;
+            for (int i = 0, v = index; i < 9; i++, v /= 3) {
+                int square = i / 3 * Model.COLS + i % 3;
+                if (WEIGHTS[square] < 0 && !cornerEmpty) {
+                    continue; // no risk next to an occupied corner
+                }
+                c += sign(v % 3) * (double) WEIGHTS[square] / coverage[square];
+            }
+            corner[index] = (int) Math.round(c);
+        }
+        for (int n = 0; n < MOBILITY_SIZE; n++) {
+            mobility[n] = 20 * n;
+        }
+        return tables;
+    }
+
+    /**
+     * Allocate tables of the right sizes, all zero.
+     *
+     * @return edge, corner, diagonal and mobility tables
+     */
+    static int[][] emptyTables() {
+        return new int[][]{new int[LINE_STATES], new int[BLOCK_STATES],
+            new int[LINE_STATES], new int[MOBILITY_SIZE]};
+    }
+
+    /**
+     * Read a PatternEvaluator from a weight file.
+     *
+     * @param in the stream
+     * @return the PatternEvaluator
+     * @throws java.io.IOException if reading fails or the stream is not a
+     * weight file
+     */
+    public static PatternEvaluator read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a Reversi weight file");
+        }
+        int[][] tables = emptyTables();
+        for (int[] table : tables) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = data.readShort();
+            }
+        }
+        return new PatternEvaluator(tables);
+    }
+
+    /**
+     * Write the tables as a weight file.
+     *
+     * @param out the stream
+     * @throws java.io.IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        for (int[] table : new int[][]{edge, corner, diagonal, mobility}) {
+            for (int value : table) {
+                data.writeShort(Math.max(Short.MIN_VALUE,
+                        Math.min(Short.MAX_VALUE, value)));
+            }
+        }
+        data.flush();
+    }
+
+    @Override
+    public int evaluate(long own, long opp) {
+        long ownV = Long.reverseBytes(own); // flipped vertically
+        long oppV = Long.reverseBytes(opp);
+        long ownH = Long.reverse(ownV); // flipped horizontally
+        long oppH = Long.reverse(oppV);
+        long ownR = Long.reverse(own); // flipped both ways
+        long oppR = Long.reverse(opp);
+
+        int score = edge[row(own, opp)] + edge[row(ownV, oppV)]
+                + edge[column(own, opp)] + edge[column(ownH, oppH)]
+                + corner[block(own, opp)] + corner[block(ownV, oppV)]
+                + corner[block(ownH, oppH)] + corner[block(ownR, oppR)]
+                + diagonal[diagonal(own, opp)] + diagonal[diagonal(ownH, oppH)]
+                + mobility[Long.bitCount(Bitboard.moves(own, opp))]
+                - mobility[Long.bitCount(Bitboard.moves(opp, own))];
+        return Math.max(-LIMIT, Math.min(LIMIT, score));
+    }
+
+    /**
+     * Return copies of the tables in weight file order.
+     *
+     * @return edge, corner, diagonal and mobility tables
+     */
+    int[][] tables() {
+        return new int[][]{edge.clone(), corner.clone(), diagonal.clone(),
+            mobility.clone()};
+    }
+
+    /**
+     * Put the table indices an evaluation looks up into an array: four edge,
+     * four corner and two diagonal indices, then the number of legal moves of
+     * the player to move and of the opponent. The evaluation is the sum of
+     * the table entries, minus the mobility entry of the opponent.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param features array of at least FEATURES elements
+     */
+    static void features(long own, long opp, int[] features) {
+        long ownV = Long.reverseBytes(own);
+        long oppV = Long.reverseBytes(opp);
+        long ownH = Long.reverse(ownV);
+        long oppH = Long.reverse(oppV);
+        long ownR = Long.reverse(own);
+        long oppR = Long.reverse(opp);
+        features[0] = row(own, opp);
+        features[1] = row(ownV, oppV);
+        features[2] = column(own, opp);
+        features[3] = column(ownH, oppH);
+        features[4] = block(own, opp);
+        features[5] = block(ownV, oppV);
+        features[6] = block(ownH, oppH);
+        features[7] = block(ownR, oppR);
+        features[8] = diagonal(own, opp);
+        features[9] = diagonal(ownH, oppH);
+        features[10] = Long.bitCount(Bitboard.moves(own, opp));
+        features[11] = Long.bitCount(Bitboard.moves(opp, own));
+    }
+
+    /**
+     * Return the index of the first row, cell (0, i) as digit i.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @return index into a line table
+     */
+    static int row(long own, long opp) {
+        return BASE3[(int) own & 0xFF] + 2 * BASE3[(int) opp & 0xFF];
+    }
+
+    /**
+     * Return the index of the first column, cell (i, 0) as digit i.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @return index into a line table
+     */
+    static int column(long own, long opp) {
+        return BASE3[(int) ((own & Bitboard.FILE_A) * COLUMN_MAGIC >>> 56)]
+                + 2 * BASE3[(int) ((opp & Bitboard.FILE_A) * COLUMN_MAGIC
+                        >>> 56)];
+    }
+
+    /**
+     * Return the index of the diagonal from cell (0, 0), cell (i, i) as digit
+     * i.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @return index into a line table
+     */
+    static int diagonal(long own, long opp) {
+        return BASE3[(int) ((own & DIAGONAL) * Bitboard.FILE_A >>> 56)]
+                + 2 * BASE3[(int) ((opp & DIAGONAL) * Bitboard.FILE_A >>> 56)];
+    }
+
+    /**
+     * Return the index of the 3x3 block at cell (0, 0), cell (i / 3, i % 3)
+     * as digit i.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @return index into the block table
+     */
+    static int block(long own, long opp) {
+        return BASE3[bits3x3(own)] + 2 * BASE3[bits3x3(opp)];
+    }
+
+    /**
+     * Gather the 3x3 block at cell (0, 0) into 9 bits.
+     *
+     * @param b a bitboard
+     * @return cell (i / 3, i % 3) as bit i
+     */
+    private static int bits3x3(long b) {
+        return (int) (b & 7 | b >>> 5 & 0x38 | b >>> 10 & 0x1C0);
+    }
+
+    /**
+     * Return the sign of a base-3 digit for the player to move.
+     *
+     * @param digit 0, 1 or 2
+     * @return 0 for empty, 1 for own and -1 for the opponent
+     */
+    private static int sign(int digit) {
+        return digit == 1 ? 1 : digit == 2 ? -1 : 0;
+    }
+}
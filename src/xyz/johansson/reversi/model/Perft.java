@@ -0,0 +1,152 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Perft: counts the leaf nodes of the game tree to a fixed depth, using the
+ * same move generation and flips as the Model. A pass counts as a move, and a
+ * finished game before the depth is reached counts as one leaf. The counts from
+ * the starting position are checked against known reference values, which
+ * makes perft both a move generation benchmark and a regression test.
+ * <p>
+ * Usage: java xyz.johansson.reversi.model.Perft depth [-divide] [board side],
+ * where board is 64 characters row by row ('-' empty, 'W' white, 'B' black)
+ * and side is 'W' or 'B' for the player to move. Without a board the starting
+ * position with white to move is used.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class Perft {
+
+    /**
+     * Reference leaf counts from the starting position, indexed by depth.
+     */
+    static final long[] START_COUNTS = {1, 4, 12, 56, 244, 1396, 8200, 55092,
+        390216, 3005288, 24571284, 212258800, 1939886636L, 18429641748L,
+        184042084512L};
+
+    private Perft() {
+    }
+
+    /**
+     * Run perft and print the leaf count and nodes per second.
+     *
+     * @param args see the class documentation
+     */
+    public static void main(String[] args) {
+        int depth = Integer.parseInt(args[0]);
+        boolean divide = false;
+        long own = Bitboard.START_WHITE, opp = Bitboard.START_BLACK;
+        boolean start = true;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-divide")) {
+                divide = true;
+            } else {
+                long white = parseBoard(args[i], 'W');
+                long black = parseBoard(args[i], 'B');
+                boolean whiteToMove = args[++i].equalsIgnoreCase("W");
+                own = whiteToMove ? white : black;
+                opp = whiteToMove ? black : white;
+                start = false;
+            }
+        }
+
+        long begin = System.nanoTime();
+        long count;
+        if (divide) {
+            count = divide(own, opp, depth);
+        } else {
+            count = perft(own, opp, depth, false);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.printf("perft(%d) = %d in %.2f s, %.0f leaves/s%n", depth,
+                count, seconds, count / seconds);
+        if (start && depth < START_COUNTS.length) {
+            System.out.println(count == START_COUNTS[depth] ? "OK"
+                    : "MISMATCH, expected " + START_COUNTS[depth]);
+        }
+    }
+
+    /**
+     * Count the leaves to a depth.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param depth remaining depth
+     * @param passed true if the opponent passed to get here
+     * @return number of leaves
+     */
+    static long perft(long own, long opp, int depth, boolean passed) {
+        if (depth == 0) {
+            return 1;
+        }
+        long moves = Bitboard.moves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                return 1; // the game is finished
+            }
+            return perft(opp, own, depth - 1, true);
+        }
+        if (depth == 1) {
+            return Long.bitCount(moves); // bulk count the last ply
+        }
+        long count = 0;
+        while (moves != 0) {
+            int move = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flips = Bitboard.flips(own, opp, move);
+            count += perft(opp & ~flips, own | flips | (1L << move),
+                    depth - 1, false);
+        }
+        return count;
+    }
+
+    /**
+     * Count the leaves to a depth and print the count below each root move.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param depth depth, at least 1
+     * @return number of leaves
+     */
+    private static long divide(long own, long opp, int depth) {
+        long moves = Bitboard.moves(own, opp);
+        if (moves == 0) {
+            long count = perft(own, opp, depth, false);
+            System.out.println("pass: " + count);
+            return count;
+        }
+        long total = 0;
+        while (moves != 0) {
+            int move = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flips = Bitboard.flips(own, opp, move);
+            long count = perft(opp & ~flips, own | flips | (1L << move),
+                    depth - 1, false);
+            System.out.println((char) ('a' + move % Model.COLS) + ""
+                    + (move / Model.COLS + 1) + ": " + count);
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Parse the cells of one color from a board string.
+     *
+     * @param board 64 characters row by row
+     * @param color 'W' or 'B'
+     * @return bitboard of the cells holding color
+     */
+    private static long parseBoard(String board, char color) {
+        if (board.length() != Model.ROWS * Model.COLS) {
+            throw new IllegalArgumentException("Invalid board: " + board);
+        }
+        long b = 0;
+        for (int i = 0; i < board.length(); i++) {
+            if (Character.toUpperCase(board.charAt(i)) == color) {
+                b |= 1L << i;
+            }
+        }
+        return b;
+    }
+}
@@ -0,0 +1,186 @@
+package xyz.johansson.reversi.model;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Pondering: searching on the opponent's time. While the player decides, the
+ * likely replies of the player are guessed with a shallow search, and the
+ * computer move after each reply is found in turn, the likeliest reply first,
+ * with an engine of its own. When the player moves into a reply whose answer
+ * is already found, the answer is played at once. Otherwise the answer is
+ * searched for as usual, starting from the positions the pondering left in
+ * the shared transposition table.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+final class Ponder {
+
+    /**
+     * Depth of the search guessing the replies.
+     */
+    private static final int GUESS_DEPTH = 4;
+
+    private final Model model;
+    private final Engine engine;
+    private final long white; // board state pondered from, the player to move
+    private final long black;
+    private final boolean whitesTurn;
+    private final int[] replies; // squares of the replies, likeliest first
+    private final int[] answers; // computer move per reply, -1 if not found
+    private final long[] nodes; // nodes searched per answer
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean stopped;
+    private volatile int count; // number of answers found
+
+    /**
+     * Construct a Ponder for a board state of a Model on the Model.ROWS x COLS
+     * board, where the player is to move. The board state is taken from a
+     * snapshot, so that the Model may move on while pondering.
+     *
+     * @param m the Model, for the search settings and hash tables
+     * @param position the board state to ponder from
+     * @param e engine of the pondering, not the engine of the Model
+     */
+    Ponder(Model m, ModelSnapshot position, Engine e) {
+        this.model = m;
+        this.engine = e;
+        this.white = position.getWhite();
+        this.black = position.getBlack();
+        this.whitesTurn = position.getWhitesTurn();
+        int n = Long.bitCount(whitesTurn ? Bitboard.moves(white, black)
+                : Bitboard.moves(black, white));
+        this.replies = new int[n];
+        this.answers = new int[n];
+        this.nodes = new long[n];
+    }
+
+    /**
+     * Ponder until stopped or every reply is answered.
+     */
+    void run() {
+        try {
+            guessReplies();
+            for (int i = 0; i < replies.length && !stopped; i++) {
+                long own = whitesTurn ? white : black;
+                long opp = whitesTurn ? black : white;
+                long flips = Bitboard.flips(own, opp, replies[i]);
+                own |= flips | (1L << replies[i]);
+                opp &= ~flips;
+                Model position = whitesTurn
+                        ? model.position(own, opp, !whitesTurn)
+                        : model.position(opp, own, !whitesTurn);
+                int answer = engine.bestMove(position, null);
+                if (stopped) {
+                    break; // the answer may be cut short
+                }
+                answers[i] = answer;
+                nodes[i] = engine.getNodes();
+                count = i + 1;
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Stop pondering without waiting for the search to return. May be called
+     * from any thread.
+     */
+    void stop() {
+        stopped = true;
+        engine.stop(); // also stops a search about to start
+    }
+
+    /**
+     * Wait until pondering has returned, after stop.
+     */
+    void await() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return the index of the answered reply leading to a board state. Must
+     * be called after await.
+     *
+     * @param w bitboard of the white tokens
+     * @param b bitboard of the black tokens
+     * @return index of the reply, -1 if there is no answer
+     */
+    int find(long w, long b) {
+        for (int i = 0; i < count; i++) {
+            long own = whitesTurn ? white : black;
+            long opp = whitesTurn ? black : white;
+            long flips = Bitboard.flips(own, opp, replies[i]);
+            own |= flips | (1L << replies[i]);
+            opp &= ~flips;
+            if (whitesTurn ? own == w && opp == b : own == b && opp == w) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the computer move answering a reply.
+     *
+     * @param i index of the reply, see find
+     * @return square of the move, -1 if there is no legal move
+     */
+    int getAnswer(int i) {
+        return answers[i];
+    }
+
+    /**
+     * Get the number of nodes searched for the answer to a reply.
+     *
+     * @param i index of the reply, see find
+     * @return nodes searched
+     */
+    long getNodes(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * Order the legal moves of the player by a shallow search of the computer
+     * answer, the reply leaving the computer the lowest score first.
+     */
+    private void guessReplies() {
+        long own = whitesTurn ? white : black;
+        long opp = whitesTurn ? black : white;
+        int[] scores = new int[replies.length];
+        long legal = Bitboard.moves(own, opp);
+        for (int i = 0; i < replies.length && !stopped; i++) {
+            int square = Long.numberOfTrailingZeros(legal);
+            legal &= legal - 1;
+            long flips = Bitboard.flips(own, opp, square);
+            Search search = new Search(GUESS_DEPTH, 0, 0);
+            search.setEvaluator(model.getEvaluator());
+            search.bestMove(opp & ~flips, own | flips | (1L << square),
+                    !whitesTurn);
+            replies[i] = square;
+            scores[i] = search.getScore();
+
+            // Insertion sort by increasing score
+            for (int j = i; j > 0 && scores[j] < scores[j - 1]; j--) {
+                int tmp = scores[j];
+                scores[j] = scores[j - 1];
+                scores[j - 1] = tmp;
+                tmp = replies[j];
+                replies[j] = replies[j - 1];
+                replies[j - 1] = tmp;
+            }
+        }
+    }
+}
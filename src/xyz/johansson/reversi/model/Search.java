@@ -0,0 +1,660 @@
+package xyz.johansson.reversi.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Iterative-deepening negamax search with alpha-beta pruning on bitboards.
+ * Each iteration searches the best move of the previous iteration first, and
+ * moves within the tree are ordered by square class (corners first, the cells
+ * next to the corners last). Leaves are scored by an Evaluator. The search
+ * stops when the depth limit, the time budget or the node budget is reached,
+ * whichever comes first.
+ * <p>
+ * Given a ForkJoinPool the search runs in parallel with the Young Brothers
+ * Wait Concept: at the root and at nodes with enough remaining depth the first
+ * move is searched alone, and the remaining moves are then searched as
+ * parallel tasks sharing the alpha bound. A beta cutoff in one task aborts its
+ * siblings.
+ * <p>
+ * Searched nodes are stored in a TranspositionTable, which gives cutoffs for
+ * positions reached by different move orders and the best move to search first
+ * when a position is searched again.
+ * <p>
+ * Given an Endgame solver, positions with few enough empty cells are solved
+ * exactly instead, regardless of the limits.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+final class Search {
+
+    /**
+     * Upper bound for all scores.
+     */
+    static final int INFINITY = 1000000;
+
+    /**
+     * Score for each disc of difference in a finished game. Higher than any
+     * heuristic evaluation, so that a won game is always preferred.
+     */
+    static final int WIN = 1000;
+
+    /**
+     * Evaluator used when none is set, shared by all searches as a
+     * PatternEvaluator is immutable.
+     */
+    static final Evaluator DEFAULT_EVALUATOR = new PatternEvaluator();
+
+    /**
+     * Minimum remaining depth for a node to be split between tasks.
+     */
+    private static final int SPLIT_DEPTH = 4;
+
+    /**
+     * Number of nodes between two checks for a beta cutoff in an enclosing
+     * split point, a power of two.
+     */
+    private static final int ABORT_INTERVAL = 64;
+
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long X_SQUARES = 0x0042000000004200L;
+    private static final long C_SQUARES = 0x4281000000008142L;
+    private static final long EDGES = 0xFF818181818181FFL
+            & ~CORNERS & ~C_SQUARES;
+
+    /**
+     * Move ordering, best square classes first.
+     */
+    private static final long[] ORDER = {
+        CORNERS,
+        EDGES,
+        ~(0xFF818181818181FFL | X_SQUARES),
+        C_SQUARES,
+        X_SQUARES
+    };
+
+    private final int maxDepth;
+    private final long nodeLimit;
+    private final long deadline;
+    private final ForkJoinPool pool; // null for a single-threaded search
+    private final TranspositionTable table; // null for no table
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean stopped;
+    private SearchListener listener;
+    private Evaluator evaluator = DEFAULT_EVALUATOR;
+    private volatile Endgame endgame; // null for no endgame solver
+    private int endgameEmpties;
+    private int depthReached;
+    private int score;
+
+    /**
+     * Construct a single-threaded Search with limits. A limit of zero or less
+     * is unlimited.
+     *
+     * @param depth maximum depth in plies
+     * @param millis time budget in milliseconds
+     * @param nodes node budget
+     */
+    Search(int depth, long millis, long nodes) {
+        this(depth, millis, nodes, null, null);
+    }
+
+    /**
+     * Construct a Search with limits that runs its tasks in a pool and keeps
+     * searched positions in a transposition table. A limit of zero or less is
+     * unlimited.
+     *
+     * @param depth maximum depth in plies
+     * @param millis time budget in milliseconds
+     * @param nodes node budget
+     * @param pool pool for parallel search, null for a single-threaded search
+     * @param table transposition table, null for none
+     */
+    Search(int depth, long millis, long nodes, ForkJoinPool pool,
+            TranspositionTable table) {
+        this.maxDepth = depth > 0 ? depth : Model.ROWS * Model.COLS;
+        this.nodeLimit = nodes > 0 ? nodes : Long.MAX_VALUE;
+        this.deadline = millis > 0
+                ? System.currentTimeMillis() + millis : Long.MAX_VALUE;
+        this.pool = pool;
+        this.table = table;
+    }
+
+    /**
+     * Return the best move for the player owning own.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param white true if white is to move
+     * @return square (row * Model.COLS + col) of the best move, -1 if there is
+     * no legal move
+     */
+    int bestMove(final long own, final long opp, final boolean white) {
+        int empties = Long.bitCount(~(own | opp));
+        if (endgame != null && empties <= endgameEmpties) {
+            return solve(own, opp, white, empties);
+        }
+        if (table != null) {
+            table.newSearch();
+        }
+        if (pool == null) {
+            return iterate(own, opp, white);
+        }
+        return pool.invoke(new RecursiveTask<Integer>() {
+            @Override
+            protected Integer compute() {
+                return iterate(own, opp, white);
+            }
+        });
+    }
+
+    /**
+     * Set a listener to be told about each completed iteration.
+     *
+     * @param l the listener, or null
+     */
+    void setListener(SearchListener l) {
+        listener = l;
+    }
+
+    /**
+     * Set the evaluator of the leaves. Must be set before bestMove.
+     *
+     * @param e the evaluator
+     */
+    void setEvaluator(Evaluator e) {
+        evaluator = e;
+    }
+
+    /**
+     * Set an endgame solver for positions with at most a number of empty
+     * cells.
+     *
+     * @param solver the solver, or null
+     * @param empties maximum number of empty cells, at most
+     * Endgame.MAX_EMPTIES
+     */
+    void setEndgame(Endgame solver, int empties) {
+        endgame = solver;
+        endgameEmpties = Math.min(empties, Endgame.MAX_EMPTIES);
+    }
+
+    /**
+     * Stop the search. bestMove returns the best move found so far.
+     */
+    void stop() {
+        stopped = true;
+        Endgame solver = endgame;
+        if (solver != null) {
+            solver.stop();
+        }
+    }
+
+    /**
+     * Get the number of nodes searched.
+     *
+     * @return nodes searched
+     */
+    long getNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * Get the depth of the last completed iteration.
+     *
+     * @return depth reached
+     */
+    int getDepthReached() {
+        return depthReached;
+    }
+
+    /**
+     * Get the score of the best move, from the point of view of the player to
+     * move.
+     *
+     * @return score of the best move
+     */
+    int getScore() {
+        return score;
+    }
+
+    /**
+     * Solve the position with the endgame solver. The listener is told about
+     * the solve as one iteration to the end of the game.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param white true if white is to move
+     * @param empties number of empty cells
+     * @return square of the best move, -1 if there is no legal move
+     */
+    private int solve(long own, long opp, boolean white, int empties) {
+        int best = endgame.bestMove(own, opp, white);
+        nodes.addAndGet(endgame.getNodes());
+        score = WIN * endgame.getScore();
+        if (best >= 0 && !stopped) {
+            depthReached = empties;
+            if (listener != null) {
+                listener.iterationFinished(empties, best / Model.COLS,
+                        best % Model.COLS, nodes.get());
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Iterative deepening from the root.
+     *
+     * @param own bitboard of the player to move
+     * @param opp bitboard of the opponent
+     * @param white true if white is to move
+     * @return square of the best move, -1 if there is no legal move
+     */
+    private int iterate(long own, long opp, boolean white) {
+        long moves = Bitboard.moves(own, opp);
+        if (moves == 0) {
+            return -1;
+        }
+        long hash = white ? Zobrist.hash(own, opp, true)
+                : Zobrist.hash(opp, own, false);
+
+        // A best move from an earlier search goes first
+        int first = TranspositionTable.NO_MOVE;
+        if (table != null) {
+            first = TranspositionTable.move(table.probe(hash));
+        }
+        int[] rootMoves = order(moves, first);
+
+        // Deeper than the number of empty cells gives the same result
+        int empties = Long.bitCount(~(own | opp));
+        int best = rootMoves[0];
+        for (int depth = 1; depth <= Math.min(maxDepth, empties); depth++) {
+            SplitPoint root = new SplitPoint(null, -INFINITY, INFINITY);
+            Worker[] workers = new Worker[rootMoves.length];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Worker(own, opp, hash, white, rootMoves[i],
+                        depth - 1, root);
+            }
+
+            // Young brothers wait for the eldest
+            workers[0].compute();
+            if (!stopped) {
+                searchSiblings(workers);
+            }
+
+            // A move found in an aborted iteration beat the previous best move,
+            // which is always searched first
+            int iterationBest = -1;
+            int alpha = -INFINITY;
+            for (Worker w : workers) {
+                if (w.valid && w.result > alpha) {
+                    alpha = w.result;
+                    iterationBest = w.move;
+                }
+            }
+            if (iterationBest >= 0) {
+                best = iterationBest;
+                score = alpha;
+            }
+            if (stopped) {
+                break;
+            }
+            depthReached = depth;
+            if (listener != null) {
+                listener.iterationFinished(depth, best / Model.COLS,
+                        best % Model.COLS, nodes.get());
+            }
+
+            // Search the best move first in the next iteration
+            for (int i = 0; rootMoves[0] != best; i++) {
+                int tmp = rootMoves[0];
+                rootMoves[0] = rootMoves[i + 1];
+                rootMoves[i + 1] = tmp;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Search all but the first of the workers, in parallel if there is a pool.
+     *
+     * @param workers workers of a split point, the first already searched
+     */
+    private void searchSiblings(Worker[] workers) {
+        if (pool == null) {
+            for (int i = 1; i < workers.length; i++) {
+                workers[i].compute();
+            }
+        } else {
+            Worker[] siblings = new Worker[workers.length - 1];
+            System.arraycopy(workers, 1, siblings, 0, siblings.length);
+            RecursiveTask.invokeAll(siblings);
+        }
+    }
+
+    /**
+     * Return the moves in static order, after a move to search first.
+     *
+     * @param moves bitboard of moves
+     * @param first square of the move to search first, NO_MOVE if none
+     * @return array of the squares of the moves, best class first
+     */
+    private static int[] order(long moves, int first) {
+        int[] ordered = new int[Long.bitCount(moves)];
+        int n = 0;
+        if (first != TranspositionTable.NO_MOVE
+                && (moves & (1L << first)) != 0) {
+            ordered[n++] = first;
+            moves &= ~(1L << first);
+        }
+        for (long cls : ORDER) {
+            long m = moves & cls;
+            while (m != 0) {
+                ordered[n++] = Long.numberOfTrailingZeros(m);
+                m &= m - 1;
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * A node whose moves are searched by several Workers. The alpha bound is
+     * shared between them.
+     */
+    private static final class SplitPoint {
+
+        private final SplitPoint parent;
+        private final AtomicInteger alpha;
+        private final int beta;
+        private volatile boolean cutoff;
+
+        SplitPoint(SplitPoint parent, int alpha, int beta) {
+            this.parent = parent;
+            this.alpha = new AtomicInteger(alpha);
+            this.beta = beta;
+        }
+
+        /**
+         * Raise alpha to a move score and flag a beta cutoff.
+         *
+         * @param s score of a move
+         */
+        void update(int s) {
+            int a = alpha.get();
+            while (s > a && !alpha.compareAndSet(a, s)) {
+                a = alpha.get();
+            }
+            if (s >= beta) {
+                cutoff = true;
+            }
+        }
+
+        /**
+         * Check if this or an enclosing split point had a beta cutoff.
+         *
+         * @return true if the search below this split point is useless
+         */
+        boolean aborted() {
+            for (SplitPoint sp = this; sp != null; sp = sp.parent) {
+                if (sp.cutoff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Task searching one move of a split point. Nodes are counted locally and
+     * added to the shared count in batches. The enclosing split points are
+     * checked for a beta cutoff every ABORT_INTERVAL nodes and at each split,
+     * so that aborted siblings stop soon without walking the split points at
+     * every node. A node searched before the cutoff was seen is still sound.
+     */
+    private final class Worker extends RecursiveTask<Integer> {
+
+        private final long own;
+        private final long opp;
+        private final long hash;
+        private final boolean white;
+        private final int move;
+        private final int depth;
+        private final SplitPoint splitPoint;
+        private long localNodes;
+        private int result;
+        private boolean valid; // false if stopped or aborted
+        private boolean aborted; // cutoff seen in an enclosing split point
+
+        /**
+         * Construct a Worker for a move.
+         *
+         * @param own bitboard of the player to move at the split point
+         * @param opp bitboard of the opponent at the split point
+         * @param hash Zobrist hash at the split point
+         * @param white true if white is to move at the split point
+         * @param move square of the move
+         * @param depth remaining depth after the move
+         * @param sp the split point
+         */
+        Worker(long own, long opp, long hash, boolean white, int move,
+                int depth, SplitPoint sp) {
+            this.own = own;
+            this.opp = opp;
+            this.hash = hash;
+            this.white = white;
+            this.move = move;
+            this.depth = depth;
+            this.splitPoint = sp;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (splitPoint.aborted()) {
+                return 0; // a sibling had a beta cutoff before this started
+            }
+            // Widen alpha by one so that a move failing low never ties with
+            // the move that raised alpha
+            result = child(own, opp, hash, white, move, depth + 1,
+                    splitPoint.alpha.get() - 1, splitPoint.beta);
+            nodes.addAndGet(localNodes & 1023);
+            if (!stopped && !splitPoint.aborted()) {
+                valid = true;
+                splitPoint.update(result);
+            }
+            return result;
+        }
+
+        /**
+         * Negamax search with alpha-beta pruning and a transposition table.
+         *
+         * @param own bitboard of the player to move
+         * @param opp bitboard of the opponent
+         * @param hash Zobrist hash of the position
+         * @param white true if white is to move
+         * @param depth remaining depth
+         * @param alpha lower bound
+         * @param beta upper bound
+         * @param passed true if the opponent passed to get here
+         * @return score from the point of view of the player to move
+         */
+        private int negamax(long own, long opp, long hash, boolean white,
+                int depth, int alpha, int beta, boolean passed) {
+            if ((++localNodes & (ABORT_INTERVAL - 1)) == 0) {
+                aborted = splitPoint.aborted();
+                if ((localNodes & 1023) == 0) {
+                    checkLimits();
+                }
+            }
+            if (stopped || aborted) {
+                return 0;
+            }
+            if (depth == 0) {
+                return evaluator.evaluate(own, opp);
+            }
+
+            // Probe the transposition table for a cutoff and a best move
+            int hashMove = TranspositionTable.NO_MOVE;
+            if (table != null) {
+                long entry = table.probe(hash);
+                if (entry != 0) {
+                    hashMove = TranspositionTable.move(entry);
+                    if (TranspositionTable.depth(entry) >= depth) {
+                        int s = TranspositionTable.score(entry);
+                        int bound = TranspositionTable.bound(entry);
+                        if (bound == TranspositionTable.EXACT
+                                || bound == TranspositionTable.LOWER
+                                && s >= beta
+                                || bound == TranspositionTable.UPPER
+                                && s <= alpha) {
+                            return s;
+                        }
+                    }
+                }
+            }
+
+            long moves = Bitboard.moves(own, opp);
+            if (moves == 0) {
+                if (passed) {
+                    // Neither player can move, the game is finished
+                    return WIN * (Long.bitCount(own) - Long.bitCount(opp));
+                }
+                return -negamax(opp, own, Zobrist.afterPass(hash), !white,
+                        depth, -beta, -alpha, true);
+            }
+            if (pool != null && depth >= SPLIT_DEPTH
+                    && Long.bitCount(moves) > 1) {
+                return split(own, opp, hash, white, moves, hashMove, depth,
+                        alpha, beta);
+            }
+
+            int alphaOrig = alpha;
+            int best = -INFINITY;
+            int bestMove = TranspositionTable.NO_MOVE;
+            if (hashMove != TranspositionTable.NO_MOVE
+                    && (moves & (1L << hashMove)) != 0) {
+                best = child(own, opp, hash, white, hashMove, depth, alpha,
+                        beta);
+                bestMove = hashMove;
+                alpha = Math.max(alpha, best);
+                moves &= ~(1L << hashMove);
+            }
+            for (long cls : ORDER) {
+                long m = moves & cls;
+                while (m != 0 && alpha < beta) {
+                    int move = Long.numberOfTrailingZeros(m);
+                    m &= m - 1;
+                    int s = child(own, opp, hash, white, move, depth, alpha,
+                            beta);
+                    if (s > best) {
+                        best = s;
+                        bestMove = move;
+                        alpha = Math.max(alpha, s);
+                    }
+                }
+            }
+            store(hash, best, depth, alphaOrig, beta, bestMove);
+            return best;
+        }
+
+        /**
+         * Make a move and search the resulting position.
+         *
+         * @param own bitboard of the player to move
+         * @param opp bitboard of the opponent
+         * @param hash Zobrist hash of the position
+         * @param white true if white is to move
+         * @param move square of the move
+         * @param depth remaining depth before the move
+         * @param alpha lower bound
+         * @param beta upper bound
+         * @return score of the move from the point of view of the player to
+         * move
+         */
+        private int child(long own, long opp, long hash, boolean white,
+                int move, int depth, int alpha, int beta) {
+            long flips = Bitboard.flips(own, opp, move);
+            return -negamax(opp & ~flips, own | flips | (1L << move),
+                    Zobrist.afterMove(hash, white, move, flips), !white,
+                    depth - 1, -beta, -alpha, false);
+        }
+
+        /**
+         * Search the first move alone and the remaining moves in parallel.
+         *
+         * @param own bitboard of the player to move
+         * @param opp bitboard of the opponent
+         * @param hash Zobrist hash of the position
+         * @param white true if white is to move
+         * @param moves bitboard of the legal moves
+         * @param hashMove move to search first, NO_MOVE if none
+         * @param depth remaining depth
+         * @param alpha lower bound
+         * @param beta upper bound
+         * @return score from the point of view of the player to move
+         */
+        private int split(long own, long opp, long hash, boolean white,
+                long moves, int hashMove, int depth, int alpha, int beta) {
+            int[] ordered = order(moves, hashMove);
+            SplitPoint sp = new SplitPoint(splitPoint, alpha, beta);
+            Worker[] workers = new Worker[ordered.length];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Worker(own, opp, hash, white, ordered[i],
+                        depth - 1, sp);
+            }
+            workers[0].compute();
+            if (!sp.cutoff && !stopped) {
+                searchSiblings(workers);
+            }
+            aborted = aborted || splitPoint.aborted();
+            if (stopped || aborted) {
+                return 0;
+            }
+            int best = -INFINITY;
+            int bestMove = TranspositionTable.NO_MOVE;
+            for (Worker w : workers) {
+                if (w.valid && w.result > best) {
+                    best = w.result;
+                    bestMove = w.move;
+                }
+            }
+            store(hash, best, depth, alpha, beta, bestMove);
+            return best;
+        }
+
+        /**
+         * Store a searched node in the transposition table, unless the search
+         * below it was stopped or aborted.
+         *
+         * @param hash Zobrist hash of the position
+         * @param best score of the best move
+         * @param depth remaining depth
+         * @param alpha lower bound the node was searched with
+         * @param beta upper bound the node was searched with
+         * @param bestMove square of the best move
+         */
+        private void store(long hash, int best, int depth, int alpha, int beta,
+                int bestMove) {
+            if (table == null || stopped || aborted) {
+                return;
+            }
+            int bound = best <= alpha ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER
+                    : TranspositionTable.EXACT;
+            table.store(hash, best, depth, bound, bestMove);
+        }
+
+        /**
+         * Add a batch of nodes to the shared count and stop the search if a
+         * limit is reached.
+         */
+        private void checkLimits() {
+            if (nodes.addAndGet(1024) >= nodeLimit
+                    || System.currentTimeMillis() >= deadline) {
+                stopped = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Listener for the progress of a computer move search. Called on the thread
+ * running the search.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public interface SearchListener {
+
+    /**
+     * Invoked when the search has completed an iteration.
+     *
+     * @param depth depth of the completed iteration
+     * @param row row of the best move so far
+     * @param col column of the best move so far
+     * @param nodes nodes searched so far
+     */
+    void iterationFinished(int depth, int row, int col, long nodes);
+}
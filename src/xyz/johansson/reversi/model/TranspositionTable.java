@@ -0,0 +1,186 @@
+package xyz.johansson.reversi.model;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table backed by two primitive arrays. Entries are
+ * packed into a long (score, depth, bound, best move and age) and stored in
+ * two-slot buckets indexed by the Zobrist hash. The key is stored xor the data
+ * so that an entry torn by concurrent writers is detected as a miss and no
+ * locking is needed.
+ * <p>
+ * Replacement policy: an entry for the same position is always replaced, and
+ * otherwise the slot holding an entry from an earlier search or, within the
+ * same search, the shallower entry is replaced.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+final class TranspositionTable {
+
+    /**
+     * Bound type of an exact score.
+     */
+    static final int EXACT = 0;
+
+    /**
+     * Bound type of a score that is a lower bound (failed high).
+     */
+    static final int LOWER = 1;
+
+    /**
+     * Bound type of a score that is an upper bound (failed low).
+     */
+    static final int UPPER = 2;
+
+    /**
+     * Best move value of an entry without a best move.
+     */
+    static final int NO_MOVE = 127;
+
+    private static final int BYTES_PER_ENTRY = 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int age;
+
+    /**
+     * Construct a TranspositionTable using at most the given amount of memory.
+     * The number of entries is rounded down to a power of two.
+     *
+     * @param megabytes memory cap in megabytes
+     */
+    TranspositionTable(int megabytes) {
+        long entries = Math.max(2, (long) megabytes * 1024 * 1024
+                / BYTES_PER_ENTRY);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 2; // even index of the first slot of a bucket
+    }
+
+    /**
+     * Look up a position.
+     *
+     * @param key Zobrist hash of the position
+     * @return packed entry, 0 if the position is not in the table
+     */
+    long probe(long key) {
+        int i = (int) key & mask;
+        long d = data[i];
+        if ((keys[i] ^ d) == key) {
+            return d;
+        }
+        d = data[i + 1];
+        if ((keys[i + 1] ^ d) == key) {
+            return d;
+        }
+        return 0;
+    }
+
+    /**
+     * Store a position. Depth must be at least one, so that a stored entry is
+     * never 0.
+     *
+     * @param key Zobrist hash of the position
+     * @param score score of the position
+     * @param depth depth the position was searched to
+     * @param bound EXACT, LOWER or UPPER
+     * @param move square of the best move, NO_MOVE if there is none
+     */
+    void store(long key, int score, int depth, int bound, int move) {
+        long d = (score & 0xFFFFFFFFL) | ((long) (depth & 0xFF) << 32)
+                | ((long) bound << 40) | ((long) (move & 0x7F) << 42)
+                | ((long) (age & 0xFF) << 49);
+        int i = (int) key & mask;
+        if ((keys[i] ^ data[i]) != key
+                && ((keys[i + 1] ^ data[i + 1]) == key
+                || replaceSecond(data[i], data[i + 1]))) {
+            i++;
+        }
+        keys[i] = key ^ d;
+        data[i] = d;
+    }
+
+    /**
+     * Start a new search; entries from earlier searches are replaced first.
+     */
+    void newSearch() {
+        age++;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return number of entries
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Get the score of an entry.
+     *
+     * @param entry packed entry
+     * @return score
+     */
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Get the depth of an entry.
+     *
+     * @param entry packed entry
+     * @return depth
+     */
+    static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    /**
+     * Get the bound type of an entry.
+     *
+     * @param entry packed entry
+     * @return EXACT, LOWER or UPPER
+     */
+    static int bound(long entry) {
+        return (int) (entry >>> 40) & 3;
+    }
+
+    /**
+     * Get the best move of an entry.
+     *
+     * @param entry packed entry
+     * @return square of the best move, NO_MOVE if there is none
+     */
+    static int move(long entry) {
+        return (int) (entry >>> 42) & 0x7F;
+    }
+
+    /**
+     * Choose which slot of a bucket to replace when neither holds the position.
+     *
+     * @param first entry in the first slot
+     * @param second entry in the second slot
+     * @return true to replace the second slot
+     */
+    private boolean replaceSecond(long first, long second) {
+        int current = age & 0xFF;
+        boolean firstOld = (int) (first >>> 49) != current;
+        boolean secondOld = (int) (second >>> 49) != current;
+        if (firstOld != secondOld) {
+            return secondOld;
+        }
+        return depth(second) < depth(first);
+    }
+}
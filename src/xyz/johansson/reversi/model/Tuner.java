@@ -0,0 +1,371 @@
+package xyz.johansson.reversi.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline tuning of the tables of a PatternEvaluator. The training data is a
+ * GameArchive of finished games, e.g. from Arena with -archive. Every position
+ * of every game where the player to move has a legal move is a sample, and its
+ * target is the final disc difference from the point of view of that player,
+ * DISC evaluation units per disc. The tables are fitted to the targets by
+ * least squares with mini-batch gradient descent.
+ * <p>
+ * The positions are never collected: each epoch replays the games straight
+ * from the memory-mapped archive, so the heap holds only the weights and one
+ * gradient per thread whatever the size of the archive. The games are split
+ * between threads, which update the shared weights without locking after each
+ * mini-batch; the few lost updates are harmless for gradient descent. Every
+ * n-th game is held out to measure the error on unseen positions.
+ * <p>
+ * Usage: java xyz.johansson.reversi.model.Tuner -archive FILE [-out FILE]
+ * [-init FILE] [-epochs N] [-batch N] [-rate R] [-holdout N] [-threads N]
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public final class Tuner {
+
+    /**
+     * Evaluation units per disc of final difference.
+     */
+    static final int DISC = 10;
+
+    private static final int EDGE = 0;
+    private static final int CORNER = EDGE + PatternEvaluator.LINE_STATES;
+    private static final int DIAGONAL = CORNER + PatternEvaluator.BLOCK_STATES;
+    private static final int MOBILITY = DIAGONAL + PatternEvaluator.LINE_STATES;
+    private static final int SIZE = MOBILITY + PatternEvaluator.MOBILITY_SIZE;
+
+    /**
+     * Offset of each feature into the weights, see PatternEvaluator.features.
+     */
+    private static final int[] OFFSETS = {EDGE, EDGE, EDGE, EDGE, CORNER,
+        CORNER, CORNER, CORNER, DIAGONAL, DIAGONAL, MOBILITY, MOBILITY};
+
+    /**
+     * Sign of each feature.
+     */
+    private static final int[] SIGNS = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1};
+
+    private final GameArchive archive;
+    private final double[] weights = new double[SIZE];
+    private int batch = 1024;
+    private double rate = 0.01;
+    private int holdout = 10;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Construct a Tuner starting from the tables of an evaluator.
+     *
+     * @param archive the training data
+     * @param start the evaluator
+     */
+    Tuner(GameArchive archive, PatternEvaluator start) {
+        this.archive = archive;
+        int offset = 0;
+        for (int[] table : start.tables()) {
+            for (int i = 0; i < table.length; i++) {
+                weights[offset + i] = table[i];
+            }
+            offset += table.length;
+        }
+    }
+
+    /**
+     * Tune and write a weight file.
+     *
+     * @param args see the class documentation
+     * @throws java.lang.Exception if a file cannot be read or written
+     */
+    public static void main(String[] args) throws Exception {
+        String archivePath = null, out = "reversi.weights", init = null;
+        int epochs = 10;
+        Integer batch = null, holdout = null, threads = null;
+        Double rate = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "-archive":
+                    archivePath = value;
+                    break;
+                case "-out":
+                    out = value;
+                    break;
+                case "-init":
+                    init = value;
+                    break;
+                case "-epochs":
+                    epochs = Integer.parseInt(value);
+                    break;
+                case "-batch":
+                    batch = Integer.parseInt(value);
+                    break;
+                case "-rate":
+                    rate = Double.parseDouble(value);
+                    break;
+                case "-holdout":
+                    holdout = Integer.parseInt(value);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Invalid option: " + args[i]);
+            }
+        }
+        if (archivePath == null) {
+            throw new IllegalArgumentException("No -archive given");
+        }
+
+        PatternEvaluator start = new PatternEvaluator();
+        if (init != null) {
+            try (InputStream in = new BufferedInputStream(
+                    new FileInputStream(init))) {
+                start = PatternEvaluator.read(in);
+            }
+        }
+        try (GameArchive archive = new GameArchive(new File(archivePath))) {
+            Tuner tuner = new Tuner(archive, start);
+            if (batch != null) {
+                tuner.batch = batch;
+            }
+            if (rate != null) {
+                tuner.rate = rate;
+            }
+            if (holdout != null) {
+                tuner.holdout = holdout;
+            }
+            if (threads != null) {
+                tuner.threads = threads;
+            }
+            tuner.run(epochs);
+            try (OutputStream output = new BufferedOutputStream(
+                    new FileOutputStream(out))) {
+                tuner.evaluator().write(output);
+            }
+        }
+        System.out.println("Weights written to " + out);
+    }
+
+    /**
+     * Run a number of epochs and print the error after each.
+     *
+     * @param epochs number of passes over the games
+     * @throws java.lang.Exception if a worker fails
+     */
+    void run(int epochs) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int epoch = 1; epoch <= epochs; epoch++) {
+                long start = System.nanoTime();
+                List<Future<double[]>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    final int thread = t;
+                    results.add(pool.submit(new Callable<double[]>() {
+                        @Override
+                        public double[] call() {
+                            return pass(thread);
+                        }
+                    }));
+                }
+                double[] total = new double[4];
+                for (Future<double[]> result : results) {
+                    double[] r = result.get();
+                    for (int i = 0; i < total.length; i++) {
+                        total[i] += r[i];
+                    }
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("epoch %d: %.0f positions, %.0f/s, "
+                        + "train error %.2f, holdout error %.2f discs%n",
+                        epoch, total[1], (total[1] + total[3]) / seconds,
+                        Math.sqrt(total[0] / Math.max(1, total[1])) / DISC,
+                        Math.sqrt(total[2] / Math.max(1, total[3])) / DISC);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * One pass of a thread over its share of the games. The games are visited
+     * in a scattered order so that a mini-batch mixes many games.
+     *
+     * @param thread index of the thread
+     * @return squared error and number of training positions, then squared
+     * error and number of held out positions
+     */
+    private double[] pass(int thread) {
+        double[] gradient = new double[SIZE];
+        int[] occurrences = new int[SIZE];
+        int[] touched = new int[batch * PatternEvaluator.FEATURES];
+        int[] features = new int[PatternEvaluator.FEATURES];
+        double[] result = new double[4];
+        int touchedCount = 0, batchCount = 0;
+
+        long size = archive.size();
+        long stride = scatterStride(size);
+        for (long i = thread; i < size; i += threads) {
+            long game = i * stride % size;
+            boolean train = holdout <= 0 || game % holdout != 0;
+            long white = archive.getWhite(game);
+            long black = archive.getBlack(game);
+            int count;
+            try {
+                count = archive.getMoveCount(game);
+            } catch (IOException ex) {
+                continue; // corrupt record
+            }
+            if (Bitboard.moves(white, black) != 0
+                    || Bitboard.moves(black, white) != 0) {
+                continue; // unfinished
+            }
+            int whiteResult = finalDifference(white, black);
+
+            // Replay the game and fit each position to the result
+            long own = Bitboard.START_WHITE, opp = Bitboard.START_BLACK;
+            boolean whitesTurn = true;
+            for (int ply = 0; ply < count; ply++) {
+                int move = archive.getMove(game, ply);
+                if (move != Model.PASS) {
+                    PatternEvaluator.features(own, opp, features);
+                    double target = DISC * (whitesTurn ? whiteResult
+                            : -whiteResult);
+                    double error = predict(features) - target;
+                    result[train ? 0 : 2] += error * error;
+                    result[train ? 1 : 3]++;
+                    if (train) {
+                        for (int f = 0; f < features.length; f++) {
+                            int w = OFFSETS[f] + features[f];
+                            if (occurrences[w]++ == 0) {
+                                touched[touchedCount++] = w;
+                            }
+                            gradient[w] += SIGNS[f] * error;
+                        }
+                        if (++batchCount == batch) {
+                            update(gradient, occurrences, touched,
+                                    touchedCount);
+                            touchedCount = 0;
+                            batchCount = 0;
+                        }
+                    }
+                    long flips = Bitboard.flips(own, opp, move);
+                    own |= flips | (1L << move);
+                    opp &= ~flips;
+                }
+                long tmp = own;
+                own = opp;
+                opp = tmp;
+                whitesTurn = !whitesTurn;
+            }
+        }
+        update(gradient, occurrences, touched, touchedCount);
+        return result;
+    }
+
+    /**
+     * Predict the score of a position with the current weights.
+     *
+     * @param features the features of the position
+     * @return the score
+     */
+    private double predict(int[] features) {
+        double score = 0;
+        for (int f = 0; f < features.length; f++) {
+            score += SIGNS[f] * weights[OFFSETS[f] + features[f]];
+        }
+        return score;
+    }
+
+    /**
+     * Apply and clear the gradient of a mini-batch. Each weight moves by its
+     * mean gradient over the positions it occurred in, so that rare pattern
+     * states learn as fast as common ones. Only the touched weights are
+     * visited.
+     *
+     * @param gradient summed gradient of the mini-batch
+     * @param occurrences number of positions each weight occurred in
+     * @param touched indices of the weights that occurred
+     * @param touchedCount number of touched indices
+     */
+    private void update(double[] gradient, int[] occurrences, int[] touched,
+            int touchedCount) {
+        for (int i = 0; i < touchedCount; i++) {
+            int w = touched[i];
+            weights[w] -= rate * gradient[w] / occurrences[w];
+            gradient[w] = 0;
+            occurrences[w] = 0;
+        }
+    }
+
+    /**
+     * Return the current weights as a PatternEvaluator.
+     *
+     * @return the PatternEvaluator
+     */
+    PatternEvaluator evaluator() {
+        int[][] tables = PatternEvaluator.emptyTables();
+        int offset = 0;
+        for (int[] table : tables) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (int) Math.round(weights[offset + i]);
+            }
+            offset += table.length;
+        }
+        return new PatternEvaluator(tables[0], tables[1], tables[2],
+                tables[3]);
+    }
+
+    /**
+     * Final disc difference of a finished game, empty cells to the winner.
+     *
+     * @param white bitboard of the white tokens
+     * @param black bitboard of the black tokens
+     * @return disc difference from the point of view of white
+     */
+    private static int finalDifference(long white, long black) {
+        int diff = Long.bitCount(white) - Long.bitCount(black);
+        int empties = Long.bitCount(~(white | black));
+        return diff > 0 ? diff + empties : diff < 0 ? diff - empties : 0;
+    }
+
+    /**
+     * Return a stride coprime to the number of games, so that game i * stride
+     * modulo size visits every game once.
+     *
+     * @param size number of games
+     * @return the stride
+     */
+    private static long scatterStride(long size) {
+        long stride = 7919; // a prime
+        while (size > 1 && gcd(stride, size) != 1) {
+            stride += 2;
+        }
+        return stride;
+    }
+
+    /**
+     * Greatest common divisor.
+     *
+     * @param a a positive number
+     * @param b a positive number
+     * @return the greatest common divisor of a and b
+     */
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,301 @@
+package xyz.johansson.reversi.model;
+
+/**
+ * Iterative-deepening negamax search with alpha-beta pruning on the
+ * multi-word bitsets of a Geometry, for the boards of another size than
+ * Model.ROWS x COLS. The opening book, the endgame solver, the transposition
+ * table and the pattern evaluator of Search are made for the classic board
+ * and are not used; leaves are scored by corners and mobility, and finished
+ * games by the disc difference. Moves are ordered corners first and the
+ * cells diagonally next to the corners last, and each iteration searches the
+ * best move of the previous iteration first. The bitsets of each ply are
+ * allocated once per search, so the tree itself allocates nothing.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+final class WideSearch {
+
+    /**
+     * Score of a corner.
+     */
+    private static final int CORNER_WEIGHT = 25;
+
+    /**
+     * Score of each legal move more than the opponent.
+     */
+    private static final int MOBILITY_WEIGHT = 3;
+
+    private final Geometry geometry;
+    private final int maxDepth;
+    private final long nodeLimit;
+    private final long deadline;
+    private final long[][] order; // move ordering, best square classes first
+    private final long[][] owns; // bitsets per ply, the player to move
+    private final long[][] opps;
+    private final long[][] moves;
+    private final long[][] flips;
+    private final long[] tmp;
+    private volatile boolean stopped;
+    private long nodes;
+    private SearchListener listener;
+    private int depthReached;
+    private int score;
+
+    /**
+     * Construct a WideSearch with limits. A limit of zero or less is
+     * unlimited.
+     *
+     * @param g the Geometry of the board
+     * @param depth maximum depth in plies
+     * @param millis time budget in milliseconds
+     * @param nodes node budget
+     */
+    WideSearch(Geometry g, int depth, long millis, long nodes) {
+        this.geometry = g;
+        this.maxDepth = depth > 0 ? Math.min(depth, g.getCells())
+                : g.getCells();
+        this.nodeLimit = nodes > 0 ? nodes : Long.MAX_VALUE;
+        this.deadline = millis > 0
+                ? System.currentTimeMillis() + millis : Long.MAX_VALUE;
+
+        // Corners, X-squares and the rest
+        int size = g.getSize(), last = size - 1;
+        long[] corners = new long[g.getWords()];
+        long[] xSquares = new long[g.getWords()];
+        long[] rest = new long[g.getWords()];
+        for (int square = 0; square < g.getCells(); square++) {
+            int row = square / size, col = square % size;
+            boolean rowEdge = row == 0 || row == last;
+            boolean colEdge = col == 0 || col == last;
+            if (rowEdge && colEdge) {
+                Geometry.set(corners, square);
+            } else if ((row == 1 || row == last - 1)
+                    && (col == 1 || col == last - 1)) {
+                Geometry.set(xSquares, square);
+            } else {
+                Geometry.set(rest, square);
+            }
+        }
+        this.order = new long[][]{corners, rest, xSquares};
+
+        // A pass takes a ply but no depth, and two passes end the game
+        int plies = 2 * maxDepth + 2;
+        this.owns = new long[plies][g.getWords()];
+        this.opps = new long[plies][g.getWords()];
+        this.moves = new long[plies][g.getWords()];
+        this.flips = new long[plies][g.getWords()];
+        this.tmp = new long[g.getWords()];
+    }
+
+    /**
+     * Return the best move for the player owning own.
+     *
+     * @param own bitset of the player to move
+     * @param opp bitset of the opponent
+     * @return square (row * size + col) of the best move, -1 if there is no
+     * legal move
+     */
+    int bestMove(long[] own, long[] opp) {
+        System.arraycopy(own, 0, owns[0], 0, own.length);
+        System.arraycopy(opp, 0, opps[0], 0, opp.length);
+        if (!geometry.moves(owns[0], opps[0], moves[0], tmp)) {
+            return -1;
+        }
+        int[] rootMoves = new int[Geometry.count(moves[0])];
+        int n = 0;
+        for (long[] squareClass : order) {
+            for (int sq = Geometry.next(moves[0], 0); sq >= 0;
+                    sq = Geometry.next(moves[0], sq + 1)) {
+                if (Geometry.get(squareClass, sq)) {
+                    rootMoves[n++] = sq;
+                }
+            }
+        }
+
+        // Deeper than the number of empty cells gives the same result
+        int empties = geometry.getCells() - Geometry.count(owns[0])
+                - Geometry.count(opps[0]);
+        int best = rootMoves[0];
+        for (int depth = 1; depth <= Math.min(maxDepth, empties); depth++) {
+            int alpha = -Search.INFINITY;
+            int iterationBest = -1;
+            for (int move : rootMoves) {
+                play(0, move);
+                int result = -negamax(1, depth - 1, -Search.INFINITY, -alpha,
+                        false);
+                if (stopped) {
+                    break;
+                }
+                if (result > alpha) {
+                    alpha = result;
+                    iterationBest = move;
+                }
+            }
+
+            // A move found in an aborted iteration beat the previous best
+            // move, which is always searched first
+            if (iterationBest >= 0) {
+                best = iterationBest;
+                score = alpha;
+            }
+            if (stopped) {
+                break;
+            }
+            depthReached = depth;
+            if (listener != null) {
+                listener.iterationFinished(depth, best / geometry.getSize(),
+                        best % geometry.getSize(), nodes);
+            }
+
+            // Search the best move first in the next iteration
+            for (int i = 0; rootMoves[0] != best; i++) {
+                int t = rootMoves[0];
+                rootMoves[0] = rootMoves[i + 1];
+                rootMoves[i + 1] = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Set the listener told about each completed iteration.
+     *
+     * @param l the listener, null for none
+     */
+    void setListener(SearchListener l) {
+        listener = l;
+    }
+
+    /**
+     * Stop the search, which then returns the best move found so far. May be
+     * called from another thread.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Get the number of nodes searched.
+     *
+     * @return nodes searched
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the depth of the last completed iteration.
+     *
+     * @return depth reached
+     */
+    int getDepthReached() {
+        return depthReached;
+    }
+
+    /**
+     * Get the score of the best move, from the point of view of the player to
+     * move.
+     *
+     * @return score of the best move
+     */
+    int getScore() {
+        return score;
+    }
+
+    /**
+     * Negamax with alpha-beta pruning from the position of a ply.
+     *
+     * @param ply ply of the position, its bitsets in owns and opps
+     * @param depth remaining depth
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @param passed true if the previous ply was a pass
+     * @return score for the player to move
+     */
+    private int negamax(int ply, int depth, int alpha, int beta,
+            boolean passed) {
+        if (++nodes >= nodeLimit
+                || (nodes & 1023) == 0
+                && System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (depth == 0) {
+            return evaluate(ply);
+        }
+        long[] own = owns[ply], opp = opps[ply], legal = moves[ply];
+        if (!geometry.moves(own, opp, legal, tmp)) {
+            if (passed) {
+                return Search.WIN * (Geometry.count(own) - Geometry.count(opp));
+            }
+            System.arraycopy(opp, 0, owns[ply + 1], 0, opp.length);
+            System.arraycopy(own, 0, opps[ply + 1], 0, own.length);
+            return -negamax(ply + 1, depth, -beta, -alpha, true);
+        }
+        for (long[] squareClass : order) {
+            for (int sq = Geometry.next(legal, 0); sq >= 0;
+                    sq = Geometry.next(legal, sq + 1)) {
+                if (!Geometry.get(squareClass, sq)) {
+                    continue;
+                }
+                play(ply, sq);
+                int result = -negamax(ply + 1, depth - 1, -beta, -alpha,
+                        false);
+                if (result > alpha) {
+                    alpha = result;
+                    if (alpha >= beta) {
+                        return alpha;
+                    }
+                }
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Make a move from the position of a ply into the bitsets of the next
+     * ply, where the opponent is to move.
+     *
+     * @param ply ply of the position
+     * @param square square of a legal move
+     */
+    private void play(int ply, int square) {
+        long[] own = owns[ply], opp = opps[ply], f = flips[ply];
+        long[] nextOwn = owns[ply + 1], nextOpp = opps[ply + 1];
+        geometry.flips(own, opp, square, f);
+        for (int w = 0; w < f.length; w++) {
+            nextOwn[w] = opp[w] & ~f[w];
+            nextOpp[w] = own[w] | f[w];
+        }
+        Geometry.set(nextOpp, square);
+    }
+
+    /**
+     * Score the position of a ply for the player to move: corners and
+     * mobility, or the disc difference of a finished game.
+     *
+     * @param ply ply of the position
+     * @return score for the player to move
+     */
+    private int evaluate(int ply) {
+        long[] own = owns[ply], opp = opps[ply], legal = moves[ply];
+        geometry.moves(own, opp, legal, tmp);
+        int ownMoves = Geometry.count(legal);
+        geometry.moves(opp, own, legal, tmp);
+        int oppMoves = Geometry.count(legal);
+        if (ownMoves == 0 && oppMoves == 0) {
+            return Search.WIN * (Geometry.count(own) - Geometry.count(opp));
+        }
+        long[] corners = order[0];
+        int ownCorners = 0, oppCorners = 0;
+        for (int w = 0; w < corners.length; w++) {
+            ownCorners += Long.bitCount(own[w] & corners[w]);
+            oppCorners += Long.bitCount(opp[w] & corners[w]);
+        }
+        return CORNER_WEIGHT * (ownCorners - oppCorners)
+                + MOBILITY_WEIGHT * (ownMoves - oppMoves);
+    }
+}
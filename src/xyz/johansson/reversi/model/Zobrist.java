@@ -0,0 +1,83 @@
+package xyz.johansson.reversi.model;
+
+import java.util.Random;
+
+/**
+ * Zobrist hashing of board states. Every (color, cell) pair and the side to
+ * move has a random 64-bit key, and the hash of a board state is the xor of
+ * the keys present. A move changes the hash incrementally by the placed token,
+ * the flipped tokens and the side to move. The keys come from a fixed seed so
+ * that hashes are stable between runs.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+final class Zobrist {
+
+    private static final long[] WHITE_KEYS = new long[Model.ROWS * Model.COLS];
+    private static final long[] BLACK_KEYS = new long[Model.ROWS * Model.COLS];
+    private static final long[] FLIP_KEYS = new long[Model.ROWS * Model.COLS];
+    private static final long WHITE_TO_MOVE;
+
+    static {
+        Random random = new Random(0x5EED_2015L);
+        for (int i = 0; i < WHITE_KEYS.length; i++) {
+            WHITE_KEYS[i] = random.nextLong();
+            BLACK_KEYS[i] = random.nextLong();
+            FLIP_KEYS[i] = WHITE_KEYS[i] ^ BLACK_KEYS[i];
+        }
+        WHITE_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Return the hash of a board state.
+     *
+     * @param white bitboard of the white tokens
+     * @param black bitboard of the black tokens
+     * @param whitesTurn true if white is to move
+     * @return the hash
+     */
+    static long hash(long white, long black, boolean whitesTurn) {
+        long hash = whitesTurn ? WHITE_TO_MOVE : 0;
+        while (white != 0) {
+            hash ^= WHITE_KEYS[Long.numberOfTrailingZeros(white)];
+            white &= white - 1;
+        }
+        while (black != 0) {
+            hash ^= BLACK_KEYS[Long.numberOfTrailingZeros(black)];
+            black &= black - 1;
+        }
+        return hash;
+    }
+
+    /**
+     * Return the hash after a move.
+     *
+     * @param hash hash before the move
+     * @param white true if white makes the move
+     * @param square square of the placed token
+     * @param flips bitboard of the flipped tokens
+     * @return hash after the move
+     */
+    static long afterMove(long hash, boolean white, int square, long flips) {
+        hash ^= WHITE_TO_MOVE ^ (white ? WHITE_KEYS : BLACK_KEYS)[square];
+        while (flips != 0) {
+            hash ^= FLIP_KEYS[Long.numberOfTrailingZeros(flips)];
+            flips &= flips - 1;
+        }
+        return hash;
+    }
+
+    /**
+     * Return the hash after a pass.
+     *
+     * @param hash hash before the pass
+     * @return hash after the pass
+     */
+    static long afterPass(long hash) {
+        return hash ^ WHITE_TO_MOVE;
+    }
+}
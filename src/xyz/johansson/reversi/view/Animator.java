@@ -0,0 +1,145 @@
+package xyz.johansson.reversi.view;
+
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.Timer;
+
+/**
+ * Animation scheduler shared by the cells of the board. A single Swing Timer
+ * ticks once per frame while any highlight is fading out, and every active
+ * highlight is advanced in the same tick, so that their repaints are
+ * coalesced into one frame. The Timer stops when nothing is animating.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+class Animator implements ActionListener {
+
+    /**
+     * Time between frames in milliseconds.
+     */
+    static final int FRAME_DELAY = 40;
+
+    /**
+     * Duration of a highlight in milliseconds.
+     */
+    static final int HIGHLIGHT_TIME = 1000;
+
+    /**
+     * Highlight background colors, from the darkest to the board background.
+     */
+    private static final Color[] FADE = new Color[16];
+
+    static {
+        Color dark = new Color(50, 75, 25); // darker background color
+        for (int i = 0; i < FADE.length; i++) {
+            double t = (double) i / (FADE.length - 1);
+            FADE[i] = new Color(
+                    blend(dark.getRed(), View.BACKGROUND_COLOR.getRed(), t),
+                    blend(dark.getGreen(), View.BACKGROUND_COLOR.getGreen(), t),
+                    blend(dark.getBlue(), View.BACKGROUND_COLOR.getBlue(), t));
+        }
+    }
+
+    private final Timer timer = new Timer(FRAME_DELAY, this);
+    private final List<Target> active = new ArrayList<>();
+
+    /**
+     * A cell whose background can be highlighted: a Token or a cell of a
+     * BoardCanvas.
+     */
+    interface Target {
+
+        /**
+         * Get the start of the highlight.
+         *
+         * @return start time in milliseconds, -1 if not highlighted
+         */
+        long getHighlightStart();
+
+        /**
+         * Set the start of the highlight.
+         *
+         * @param millis start time in milliseconds, -1 if not highlighted
+         */
+        void setHighlightStart(long millis);
+
+        /**
+         * Set the background color and repaint if it changed.
+         *
+         * @param background the background color
+         */
+        void setHighlight(Color background);
+    }
+
+    /**
+     * Highlight the background of a cell and fade it out. Highlighting a cell
+     * again restarts its highlight. Must be called on the event dispatch
+     * thread.
+     *
+     * @param target the cell
+     */
+    void highlight(Target target) {
+        if (target.getHighlightStart() < 0) {
+            active.add(target);
+        }
+        target.setHighlightStart(System.currentTimeMillis());
+        target.setHighlight(FADE[0]);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Check if the Timer is ticking, that is if any highlight is fading out.
+     *
+     * @return true if the Timer is running
+     */
+    boolean isRunning() {
+        return timer.isRunning();
+    }
+
+    /**
+     * Advance every active highlight by one frame and stop ticking when all
+     * have faded out.
+     *
+     * @param e the Timer event
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        long now = System.currentTimeMillis();
+        for (int i = active.size() - 1; i >= 0; i--) {
+            Target target = active.get(i);
+            long elapsed = now - target.getHighlightStart();
+            int step = (int) Math.min(FADE.length - 1,
+                    elapsed * (FADE.length - 1) / HIGHLIGHT_TIME);
+            target.setHighlight(FADE[step]);
+            if (step == FADE.length - 1) {
+                // Done; move the last cell into its place
+                target.setHighlightStart(-1);
+                Target last = active.remove(active.size() - 1);
+                if (last != target) {
+                    active.set(i, last);
+                }
+            }
+        }
+        if (active.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Blend two color components.
+     *
+     * @param from component at the start
+     * @param to component at the end
+     * @param t fraction of the way, from 0 to 1
+     * @return the blended component
+     */
+    private static int blend(int from, int to, double t) {
+        return (int) Math.round(from + (to - from) * t);
+    }
+}
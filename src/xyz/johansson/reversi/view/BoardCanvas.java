@@ -0,0 +1,266 @@
+package xyz.johansson.reversi.view;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import javax.swing.JComponent;
+import xyz.johansson.reversi.model.Model;
+
+/**
+ * Board renderer painting the whole grid in one component, an alternative to
+ * a JButton and a Token per cell. The tokens are drawn from sprites rendered
+ * once per cell size at the resolution of the display, a changed cell
+ * repaints only its own rectangle, and a click is mapped to its cell here and
+ * passed on as an ActionEvent with the ActionCommand (row * size + col), as a
+ * cell button would.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+class BoardCanvas extends JComponent {
+
+    /**
+     * Preferred size of a cell of the Model.ROWS x COLS board in pixels. The
+     * cells of other boards are scaled to the same size of the board.
+     */
+    static final int CELL_SIZE = 60;
+
+    private final int size; // rows and columns
+    private final int[] colors;
+    private final Cell[] cells;
+    private final Animator animator;
+    private final ActionListener listener;
+    private BufferedImage whiteSprite; // null until first painted
+    private BufferedImage blackSprite;
+    private int spriteSize; // in device pixels
+
+    /**
+     * A cell of the board, highlighted by the Animator.
+     */
+    private final class Cell implements Animator.Target {
+
+        private final int square;
+        private long highlightStart = -1; // -1 if not highlighted
+        private Color background = View.BACKGROUND_COLOR;
+
+        /**
+         * Construct a Cell.
+         *
+         * @param square square (row * size + col) of the cell
+         */
+        Cell(int square) {
+            this.square = square;
+        }
+
+        @Override
+        public long getHighlightStart() {
+            return highlightStart;
+        }
+
+        @Override
+        public void setHighlightStart(long millis) {
+            highlightStart = millis;
+        }
+
+        @Override
+        public void setHighlight(Color c) {
+            if (background != c) {
+                background = c;
+                repaintCell(square);
+            }
+        }
+    }
+
+    /**
+     * Construct an empty BoardCanvas.
+     *
+     * @param size number of rows and columns
+     * @param a the Animator of the board
+     * @param l the listener told about clicked cells
+     */
+    BoardCanvas(int size, Animator a, ActionListener l) {
+        this.size = size;
+        this.colors = new int[size * size];
+        this.cells = new Cell[size * size];
+        this.animator = a;
+        this.listener = l;
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Cell(i);
+        }
+        int boardSize = CELL_SIZE * Model.COLS;
+        setPreferredSize(new Dimension(boardSize, boardSize));
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int square = squareAt(e.getX(), e.getY());
+                if (square >= 0) {
+                    listener.actionPerformed(new ActionEvent(
+                            BoardCanvas.this, ActionEvent.ACTION_PERFORMED,
+                            Integer.toString(square)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the color status of a cell.
+     *
+     * @param row row
+     * @param col column
+     * @return color status
+     */
+    int getColor(int row, int col) {
+        return colors[row * size + col];
+    }
+
+    /**
+     * Set the color status of a cell and repaint it. Highlight the cell if
+     * the new color status is not representing an empty cell.
+     *
+     * @param row row
+     * @param col column
+     * @param c value representing color status
+     */
+    void setColor(int row, int col, int c) {
+        int square = row * size + col;
+        colors[square] = c;
+        if (c != Model.EMPTY) {
+            animator.highlight(cells[square]); // repaints
+        } else {
+            repaintCell(square);
+        }
+    }
+
+    /**
+     * Paint the cells within the clip: background, grid line and token. The
+     * margin to the right of and below the cells gets the background colour,
+     * as the component is opaque.
+     *
+     * @param g the graphics context
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(View.BACKGROUND_COLOR);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int cellWidth = getWidth() / size;
+        int cellHeight = getHeight() / size;
+        if (cellWidth <= 0 || cellHeight <= 0) {
+            return;
+        }
+        int spriteWidth = Math.min(cellWidth, cellHeight);
+        updateSprites(spriteWidth, g2.getTransform().getScaleX());
+
+        // Only the cells within the clip
+        int firstRow = Math.max(0, clip.y / cellHeight);
+        int lastRow = Math.min(size - 1,
+                (clip.y + clip.height - 1) / cellHeight);
+        int firstCol = Math.max(0, clip.x / cellWidth);
+        int lastCol = Math.min(size - 1,
+                (clip.x + clip.width - 1) / cellWidth);
+
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                int square = i * size + j;
+                int x = j * cellWidth;
+                int y = i * cellHeight;
+                g.setColor(cells[square].background);
+                g.fillRect(x, y, cellWidth, cellHeight);
+                g.setColor(Color.black);
+                g.drawRect(x, y, cellWidth - 1, cellHeight - 1);
+                BufferedImage sprite = colors[square] == Model.WHITE
+                        ? whiteSprite : colors[square] == Model.BLACK
+                                ? blackSprite : null;
+                if (sprite != null) {
+                    g.drawImage(sprite, x + (cellWidth - spriteWidth) / 2,
+                            y + (cellHeight - spriteWidth) / 2, spriteWidth,
+                            spriteWidth, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the cell at a point.
+     *
+     * @param x x coordinate in this component
+     * @param y y coordinate in this component
+     * @return square (row * size + col), -1 if outside the board
+     */
+    int squareAt(int x, int y) {
+        int cellWidth = getWidth() / size;
+        int cellHeight = getHeight() / size;
+        if (cellWidth <= 0 || cellHeight <= 0 || x < 0 || y < 0) {
+            return -1;
+        }
+        int row = y / cellHeight;
+        int col = x / cellWidth;
+        if (row >= size || col >= size) {
+            return -1;
+        }
+        return row * size + col;
+    }
+
+    /**
+     * Repaint the rectangle of a cell only.
+     *
+     * @param square square (row * size + col) of the cell
+     */
+    private void repaintCell(int square) {
+        int cellWidth = getWidth() / size;
+        int cellHeight = getHeight() / size;
+        repaint(square % size * cellWidth, square / size * cellHeight,
+                cellWidth, cellHeight);
+    }
+
+    /**
+     * Render the token sprites again if the cell size or the display scale
+     * changed. The sprites are rendered in device pixels, so that they stay
+     * sharp on high-DPI displays.
+     *
+     * @param width cell size in user space pixels
+     * @param scale device pixels per user space pixel
+     */
+    private void updateSprites(int width, double scale) {
+        int pixels = (int) Math.ceil(width * Math.max(1, scale));
+        if (pixels == spriteSize && whiteSprite != null) {
+            return;
+        }
+        spriteSize = pixels;
+        whiteSprite = createSprite(pixels, Color.WHITE);
+        blackSprite = createSprite(pixels, Color.BLACK);
+    }
+
+    /**
+     * Render a token, 80 % of the cell in size, on a transparent background.
+     *
+     * @param pixels cell size in device pixels
+     * @param color color of the token
+     * @return the sprite
+     */
+    private static BufferedImage createSprite(int pixels, Color color) {
+        BufferedImage sprite = new BufferedImage(pixels, pixels,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sprite.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(color);
+        g.fillOval((int) (0.1 * pixels), (int) (0.1 * pixels),
+                (int) (0.8 * pixels), (int) (0.8 * pixels));
+        g.dispose();
+        return sprite;
+    }
+}
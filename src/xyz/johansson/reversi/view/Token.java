@@ -2,10 +2,7 @@ package xyz.johansson.reversi.view;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import javax.swing.JPanel;
-import javax.swing.Timer;
 import xyz.johansson.reversi.model.Model;
 
 /**
@@ -14,17 +11,23 @@ import xyz.johansson.reversi.model.Model;
  * @author Tobias Johansson
  * @version 1.03, 3 Mar 2015
  */
-class Token extends JPanel {
+class Token extends JPanel implements Animator.Target {
 
     /**
      * Color status value.
      */
     private int color;
 
+    private final Animator animator;
+    private long highlightStart = -1; // -1 if not highlighted
+
     /**
      * Construct an empty Token (with background color).
+     *
+     * @param a the Animator of the board
      */
-    Token() {
+    Token(Animator a) {
+        animator = a;
         color = Model.EMPTY;
         setBackground(View.BACKGROUND_COLOR); // repaints
     }
@@ -88,17 +91,28 @@ class Token extends JPanel {
         }
     }
 
+    @Override
+    public long getHighlightStart() {
+        return highlightStart;
+    }
+
+    @Override
+    public void setHighlightStart(long millis) {
+        highlightStart = millis;
+    }
+
+    @Override
+    public void setHighlight(Color background) {
+        if (getBackground() != background) {
+            setBackground(background); // repaints
+        }
+    }
+
     /**
-     * Animation that highlights the background of a Token.
+     * Animation that highlights the background of a Token, fading out in the
+     * shared Animator.
      */
     private void highlight() {
-        setBackground(new Color(50, 75, 25)); // darker background color
-        int delay = 1000; // milliseconds
-        new Timer(delay, new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent evt) {
-                setBackground(View.BACKGROUND_COLOR); // repaints
-            }
-        }).start();
+        animator.highlight(this);
     }
 }
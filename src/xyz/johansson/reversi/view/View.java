@@ -3,12 +3,14 @@ package xyz.johansson.reversi.view;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.GridLayout;
 import java.awt.Image;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.concurrent.Executor;
 import javax.swing.BorderFactory;
+import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -16,9 +18,14 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.SwingUtilities;
 import xyz.johansson.reversi.controller.Controller;
+import xyz.johansson.reversi.model.BoardChange;
+import xyz.johansson.reversi.model.Engines;
 import xyz.johansson.reversi.model.Model;
+import xyz.johansson.reversi.model.ModelListener;
+import xyz.johansson.reversi.model.ModelSnapshot;
 
 /**
  * View class.
@@ -26,28 +33,64 @@ import xyz.johansson.reversi.model.Model;
  * @author Tobias Johansson
  * @version 1.03, 3 Mar 2015
  */
-public class View extends JPanel implements Observer {
+public class View extends JPanel implements ModelListener {
 
     /**
      * Background color for the game board.
      */
     static final Color BACKGROUND_COLOR = new Color(100, 150, 50);
 
+    /**
+     * Executor for the View as a ModelListener: runs a task on the event
+     * dispatch thread, at once if called on it.
+     */
+    public static final Executor EVENT_DISPATCH = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            if (EventQueue.isDispatchThread()) {
+                command.run();
+            } else {
+                EventQueue.invokeLater(command);
+            }
+        }
+    };
+
     private Model model;
-    private Token[][] tokens;
+    private Controller controller;
+    private Animator animator; // one for the whole board
+    private boolean useCanvas;
+    private JPanel centerPanel;
+    private int boardSize; // rows and columns of the board shown
+    private Token[][] tokens; // null with a BoardCanvas
+    private BoardCanvas canvas; // null with Tokens
     private JLabel whitePointsLabel;
     private JLabel blackPointsLabel;
+    private ModelSnapshot lastSnapshot; // the last one received, or null
 
     /**
-     * Construct and initiate the View and the Controller.
+     * Construct and initiate the View and the Controller, with a JButton and
+     * a Token for each cell of the board.
      *
      * @param m the Model
      */
     public View(Model m) {
+        this(m, false);
+    }
+
+    /**
+     * Construct and initiate the View and the Controller. The board is either
+     * a JButton and a Token for each cell, or a single BoardCanvas painting
+     * every cell, which scales better to large boards and high-DPI displays.
+     *
+     * @param m the Model
+     * @param useCanvas true for a BoardCanvas
+     */
+    public View(Model m, boolean useCanvas) {
         super(new BorderLayout()); // BorderLayout in JFrame
         this.model = m;
+        this.useCanvas = useCanvas;
 
-        Controller controller = new Controller(model, this); // init Controller
+        controller = new Controller(model, this); // init Controller
 
         /* NORTH panel: Menu bar */
         JPanel northPanel = new JPanel(new GridLayout());
@@ -69,6 +112,19 @@ public class View extends JPanel implements Observer {
         newGameMenu.add(newPvCItem);
         newPvCItem.setActionCommand("newPvC");
         newPvCItem.addActionListener(controller.getMenuListener());
+
+        JMenu sizeMenu = new JMenu("Board size"); // sub menu: Board size
+        gameMenu.add(sizeMenu);
+        ButtonGroup sizeGroup = new ButtonGroup(); // one size at a time
+        for (int size : Model.BOARD_SIZES) {
+            JRadioButtonMenuItem sizeItem = new JRadioButtonMenuItem(
+                    size + "x" + size);
+            sizeMenu.add(sizeItem);
+            sizeGroup.add(sizeItem);
+            sizeItem.setSelected(size == Model.ROWS);
+            sizeItem.setActionCommand("size");
+            sizeItem.addActionListener(controller.getMenuListener());
+        }
         gameMenu.addSeparator();
 
         JMenuItem saveItem = new JMenuItem("Save"); // Save
@@ -81,11 +137,41 @@ public class View extends JPanel implements Observer {
         openItem.addActionListener(controller.getMenuListener());
         gameMenu.addSeparator();
 
+        JMenuItem undoItem = new JMenuItem("Undo"); // Undo
+        gameMenu.add(undoItem);
+        undoItem.setActionCommand("undo");
+        undoItem.addActionListener(controller.getMenuListener());
+        JMenuItem redoItem = new JMenuItem("Redo"); // Redo
+        gameMenu.add(redoItem);
+        redoItem.setActionCommand("redo");
+        redoItem.addActionListener(controller.getMenuListener());
+        gameMenu.addSeparator();
+
         JMenuItem exitItem = new JMenuItem("Exit"); // Exit
         gameMenu.add(exitItem);
         exitItem.setActionCommand("exit");
         exitItem.addActionListener(controller.getMenuListener());
 
+        JMenu computerMenu = new JMenu("Computer"); // create Computer menu
+        menuBar.add(computerMenu);
+        ButtonGroup engineGroup = new ButtonGroup(); // one engine at a time
+        for (String name : Engines.getNames()) {
+            JRadioButtonMenuItem engineItem = new JRadioButtonMenuItem(name);
+            computerMenu.add(engineItem);
+            engineGroup.add(engineItem);
+            engineItem.setSelected(name.equals(model.getEngine().getName()));
+            engineItem.setActionCommand("engine");
+            engineItem.addActionListener(controller.getMenuListener());
+        }
+        computerMenu.addSeparator();
+
+        JCheckBoxMenuItem ponderItem = new JCheckBoxMenuItem(
+                "Think on your time"); // Pondering
+        computerMenu.add(ponderItem);
+        ponderItem.setSelected(model.getPonderEnabled());
+        ponderItem.setActionCommand("ponder");
+        ponderItem.addActionListener(controller.getMenuListener());
+
         JMenu helpMenu = new JMenu("Help"); // create Help menu
         menuBar.add(helpMenu);
         JMenuItem aboutItem = new JMenuItem("About Reversi"); // About
@@ -94,23 +180,10 @@ public class View extends JPanel implements Observer {
         aboutItem.addActionListener(controller.getMenuListener());
 
         /* CENTER panel: Game board */
-        JPanel centerPanel = new JPanel(new GridLayout(Model.ROWS, Model.COLS));
+        animator = new Animator();
+        centerPanel = new JPanel(new BorderLayout());
         add(centerPanel, BorderLayout.CENTER);
-
-        // Add a button for each cell on the board and a Token on each button
-        tokens = new Token[Model.ROWS][Model.COLS];
-        for (int i = 0; i < Model.ROWS; i++) {
-            for (int j = 0; j < Model.COLS; j++) {
-                JButton cell = new JButton();
-                centerPanel.add(cell);
-                tokens[i][j] = new Token();
-                cell.add(tokens[i][j]);
-                cell.setPreferredSize(new Dimension(60, 60));
-                cell.setBorder(BorderFactory.createLineBorder(Color.black));
-                cell.setActionCommand(Integer.toString(i * Model.COLS + j));
-                cell.addActionListener(controller.getBoardListener());
-            }
-        }
+        buildBoard(Model.ROWS);
 
         /* SOUTH panel: Points display */
         JPanel southPanel = new JPanel(new GridLayout());
@@ -124,30 +197,44 @@ public class View extends JPanel implements Observer {
     //--------------------------------------------------------------------------
     // Public methods
     /**
-     * This method is called whenever the observed object is changed. An
-     * application calls an Observable object's notifyObservers method to have
-     * all the object's observers notified of the change.
+     * Invoked after the Model changed. Only the cells in the BoardChange of
+     * the snapshot are visited.
      *
-     * @param o the observable object
-     * @param arg an argument passed to the notifyObservers method
+     * @param snapshot the state of the Model after the change
      */
     @Override
-    public void update(Observable o, Object arg) {
-        for (int i = 0; i < Model.ROWS; i++) {
-            for (int j = 0; j < Model.COLS; j++) {
-                if (tokens[i][j].getColor() != model.getBoard(i, j)) {
-                    tokens[i][j].setColor(model.getBoard(i, j));
+    public void modelChanged(ModelSnapshot snapshot) {
+        lastSnapshot = snapshot;
+
+        // A new board for a game of another size, every token a changed cell
+        if (snapshot.getSize() != boardSize) {
+            buildBoard(snapshot.getSize());
+        }
+
+        // Set the changed cells
+        BoardChange change = snapshot.getChange();
+        for (int square = change.nextCell(0); square >= 0;
+                square = change.nextCell(square + 1)) {
+            int row = square / boardSize, col = square % boardSize;
+            int color = snapshot.getBoard(row, col);
+            if (canvas != null) {
+                if (canvas.getColor(row, col) != color) {
+                    canvas.setColor(row, col, color);
                 }
+            } else if (tokens[row][col].getColor() != color) {
+                tokens[row][col].setColor(color);
             }
         }
-        if (model.somebodyWon()) {
-            whitePointsLabel.setText("White: " + model.getWhitePoints());
-            blackPointsLabel.setText("Black: " + model.getBlackPoints());
-            if (model.getPvP()) {
+        if (snapshot.somebodyWon()) {
+            int whitePoints = snapshot.getWhitePoints();
+            int blackPoints = snapshot.getBlackPoints();
+            whitePointsLabel.setText("White: " + whitePoints);
+            blackPointsLabel.setText("Black: " + blackPoints);
+            if (snapshot.getPvP()) {
                 String winner;
-                if (model.getWhitePoints() > model.getBlackPoints()) {
+                if (whitePoints > blackPoints) {
                     winner = "White";
-                } else if (model.getWhitePoints() == model.getBlackPoints()) {
+                } else if (whitePoints == blackPoints) {
                     winner = "nobody (draw)";
                 } else {
                     winner = "Black";
@@ -156,9 +243,9 @@ public class View extends JPanel implements Observer {
                         + " won!", "Game finished", JOptionPane.PLAIN_MESSAGE);
             } else {
                 String msg;
-                if (model.getWhitePoints() > model.getBlackPoints()) {
+                if (whitePoints > blackPoints) {
                     msg = "Congratulations, you won!";
-                } else if (model.getWhitePoints() == model.getBlackPoints()) {
+                } else if (whitePoints == blackPoints) {
                     msg = "Congratulations, nobody won (draw)!";
                 } else {
                     msg = "Sorry, you lost. Better luck next time!";
@@ -169,18 +256,52 @@ public class View extends JPanel implements Observer {
         } else {
 
             String whiteTurn = "", blackTurn = "";
-            if (model.getWhitesTurn()) {
+            if (snapshot.getComputerThinking()) {
+                blackTurn = " (Thinking...)";
+            } else if (snapshot.getWhitesTurn()) {
                 whiteTurn = " (Your turn)";
             } else {
                 blackTurn = " (Your turn)";
             }
-            whitePointsLabel.setText("White: " + model.getWhitePoints()
+            if (snapshot.getPassed() && snapshot.getWhitesTurn()) {
+                blackTurn += " (Passed)";
+            } else if (snapshot.getPassed()) {
+                whiteTurn += " (Passed)";
+            }
+            whitePointsLabel.setText("White: " + snapshot.getWhitePoints()
                     + whiteTurn);
-            blackPointsLabel.setText("Black: " + model.getBlackPoints()
+            blackPointsLabel.setText("Black: " + snapshot.getBlackPoints()
                     + blackTurn);
         }
     }
 
+    /**
+     * Show the progress of the computer move search, with the points of the
+     * last snapshot received.
+     *
+     * @param depth depth searched so far
+     */
+    public void showComputerProgress(int depth) {
+        if (lastSnapshot != null) {
+            blackPointsLabel.setText("Black: " + lastSnapshot.getBlackPoints()
+                    + " (Thinking, depth " + depth + ")");
+        }
+    }
+
+    /**
+     * Show the cost of the last computer move, with the points of the last
+     * snapshot received.
+     *
+     * @param nodes nodes searched
+     * @param millis time spent in milliseconds
+     */
+    public void showComputerStatistics(long nodes, long millis) {
+        if (lastSnapshot != null) {
+            blackPointsLabel.setText("Black: " + lastSnapshot.getBlackPoints()
+                    + " (" + nodes + " nodes, " + millis + " ms)");
+        }
+    }
+
     /**
      * Returns the image to be displayed as the icon for this window's ancestor
      * frame.
@@ -191,4 +312,47 @@ public class View extends JPanel implements Observer {
     public Image getJFrameIconImage() {
         return ((JFrame) SwingUtilities.getWindowAncestor(this)).getIconImage();
     }
+
+    //--------------------------------------------------------------------------
+    // Helper methods
+    /**
+     * Replace the cells of the board with the empty cells of a board of a
+     * given size, either a JButton and a Token for each cell or a BoardCanvas.
+     * The board keeps its size on screen.
+     *
+     * @param size number of rows and columns
+     */
+    private void buildBoard(int size) {
+        centerPanel.removeAll();
+        tokens = null;
+        canvas = null;
+        boardSize = size;
+        if (useCanvas) {
+            canvas = new BoardCanvas(size, animator,
+                    controller.getBoardListener());
+            centerPanel.add(canvas, BorderLayout.CENTER);
+        } else {
+            JPanel grid = new JPanel(new GridLayout(size, size));
+            centerPanel.add(grid, BorderLayout.CENTER);
+
+            // Add a button for each cell and a Token on each button
+            int cellSize = BoardCanvas.CELL_SIZE * Model.COLS / size;
+            tokens = new Token[size][size];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    JButton cell = new JButton();
+                    grid.add(cell);
+                    tokens[i][j] = new Token(animator);
+                    cell.add(tokens[i][j]);
+                    cell.setPreferredSize(new Dimension(cellSize, cellSize));
+                    cell.setBorder(BorderFactory.createLineBorder(
+                            Color.black));
+                    cell.setActionCommand(Integer.toString(i * size + j));
+                    cell.addActionListener(controller.getBoardListener());
+                }
+            }
+        }
+        centerPanel.revalidate();
+        centerPanel.repaint();
+    }
 }
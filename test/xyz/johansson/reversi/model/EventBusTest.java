@@ -0,0 +1,162 @@
+package xyz.johansson.reversi.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests of the EventBus: every listener gets the snapshots in the order they
+ * were published, whatever its Executor.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public class EventBusTest {
+
+    /**
+     * A listener recording the snapshots it gets.
+     */
+    private static final class Recorder implements ModelListener {
+
+        private final List<ModelSnapshot> snapshots
+                = Collections.synchronizedList(new ArrayList<ModelSnapshot>());
+
+        @Override
+        public void modelChanged(ModelSnapshot snapshot) {
+            snapshots.add(snapshot);
+        }
+    }
+
+    private static ModelSnapshot snapshot(Model m) {
+        return new ModelSnapshot(m, BoardChange.NONE);
+    }
+
+    @Test
+    public void orderPerListenerOnPool() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            EventBus bus = new EventBus();
+            Recorder direct = new Recorder();
+            Recorder[] pooled = new Recorder[3];
+            bus.addListener(direct, EventBus.DIRECT);
+            for (int i = 0; i < pooled.length; i++) {
+                pooled[i] = new Recorder();
+                bus.addListener(pooled[i], pool);
+            }
+            Model m = new Model();
+            m.newPvP();
+            for (int i = 0; i < 1000; i++) {
+                bus.publish(snapshot(m));
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(1000, direct.snapshots.size());
+            for (Recorder r : pooled) {
+                assertEquals(direct.snapshots.size(), r.snapshots.size());
+                for (int i = 0; i < direct.snapshots.size(); i++) {
+                    assertSame(direct.snapshots.get(i), r.snapshots.get(i));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void orderWithSlowListener() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            EventBus bus = new EventBus();
+            final Recorder slow = new Recorder();
+            bus.addListener(new ModelListener() {
+                @Override
+                public void modelChanged(ModelSnapshot snapshot) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    slow.modelChanged(snapshot);
+                }
+            }, pool);
+            Model m = new Model();
+            m.newPvP();
+            List<ModelSnapshot> published = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                ModelSnapshot s = snapshot(m);
+                published.add(s);
+                bus.publish(s);
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(published, slow.snapshots);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void modelPublishesInOrder() {
+        Model m = new Model();
+        Recorder r = new Recorder();
+        m.addListener(r);
+        m.newPvP();
+        for (int i = 0; i < 2; i++) {
+            int move = Long.numberOfTrailingZeros(m.getLegalMoves());
+            assertTrue(m.setBoard(move / Model.COLS, move % Model.COLS));
+        }
+        m.undo();
+        assertEquals(4, r.snapshots.size());
+        int[] moveCounts = {0, 1, 2, 1};
+        for (int i = 0; i < moveCounts.length; i++) {
+            assertEquals(moveCounts[i], r.snapshots.get(i).getMoveCount());
+        }
+    }
+
+    @Test
+    public void throwingListenerKeepsGettingSnapshots() {
+        Logger logger = Logger.getLogger(EventBus.class.getName());
+        Level level = logger.getLevel();
+        logger.setLevel(Level.OFF);
+        try {
+            EventBus bus = new EventBus();
+            final Recorder r = new Recorder();
+            bus.addListener(new ModelListener() {
+                @Override
+                public void modelChanged(ModelSnapshot snapshot) {
+                    r.modelChanged(snapshot);
+                    throw new IllegalStateException();
+                }
+            }, EventBus.DIRECT);
+            Model m = new Model();
+            bus.publish(snapshot(m));
+            bus.publish(snapshot(m));
+            assertEquals(2, r.snapshots.size());
+        } finally {
+            logger.setLevel(level);
+        }
+    }
+
+    @Test
+    public void removeListener() {
+        EventBus bus = new EventBus();
+        Recorder r = new Recorder();
+        bus.addListener(r, EventBus.DIRECT);
+        bus.addListener(r, EventBus.DIRECT);
+        Model m = new Model();
+        bus.publish(snapshot(m));
+        assertEquals(2, r.snapshots.size()); // added twice, called twice
+        bus.removeListener(r);
+        bus.publish(snapshot(m));
+        assertEquals(2, r.snapshots.size());
+    }
+}
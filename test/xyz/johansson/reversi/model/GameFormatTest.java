@@ -0,0 +1,200 @@
+package xyz.johansson.reversi.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests of GameFormat: saved games read back as they were written, and
+ * corrupt records are rejected.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public class GameFormatTest {
+
+    /**
+     * Play random moves from the starting position.
+     *
+     * @param plies number of moves, fewer if the game ends first
+     * @param seed seed of the moves
+     * @return the Model
+     */
+    static Model randomGame(int plies, long seed) {
+        Random random = new Random(seed);
+        Model m = new Model();
+        m.newPvP();
+        for (int i = 0; i < plies && !m.somebodyWon(); i++) {
+            long moves = m.getLegalMoves();
+            for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            int square = Long.numberOfTrailingZeros(moves);
+            m.setBoard(square / Model.COLS, square % Model.COLS);
+        }
+        return m;
+    }
+
+    private static byte[] write(Model m) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameFormat.write(m, out);
+        return out.toByteArray();
+    }
+
+    private static Model read(byte[] file) throws IOException {
+        Model m = new Model();
+        GameFormat.read(new ByteArrayInputStream(file), m);
+        return m;
+    }
+
+    private static void assertSameGame(Model expected, Model actual) {
+        assertEquals(expected.getWhite(), actual.getWhite());
+        assertEquals(expected.getBlack(), actual.getBlack());
+        assertEquals(expected.getWhitesTurn(), actual.getWhitesTurn());
+        assertEquals(expected.getBoardLocked(), actual.getBoardLocked());
+        assertEquals(expected.getPassed(), actual.getPassed());
+        assertEquals(expected.getPvP(), actual.getPvP());
+        assertEquals(expected.getMoveCount(), actual.getMoveCount());
+        for (int i = 0; i < expected.getMoveCount(); i++) {
+            assertEquals(expected.getMove(i), actual.getMove(i));
+        }
+    }
+
+    private static void assertRejected(byte[] file) {
+        try {
+            read(file);
+            fail("Corrupt game was read");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        for (int plies : new int[]{0, 1, 20, 45, 100}) {
+            for (long seed = 0; seed < 20; seed++) {
+                Model m = randomGame(plies, seed);
+                assertSameGame(m, read(write(m)));
+            }
+        }
+    }
+
+    @Test
+    public void roundTripAfterUndo() throws IOException {
+        Model m = randomGame(30, 1);
+        m.undo();
+        m.undo();
+        assertSameGame(m, read(write(m)));
+    }
+
+    @Test
+    public void rejectsBadMagic() throws IOException {
+        byte[] file = write(randomGame(10, 2));
+        file[0] ^= 1;
+        assertRejected(file);
+    }
+
+    @Test
+    public void rejectsOverlappingBoards() throws IOException {
+        byte[] file = write(randomGame(0, 0));
+        for (int i = 0; i < 8; i++) { // black = white
+            file[4 + 9 + i] = file[4 + 1 + i];
+        }
+        assertRejected(file);
+    }
+
+    @Test
+    public void rejectsBoardWithoutMoves() throws IOException {
+        byte[] file = write(randomGame(0, 0));
+        file[4 + 8] ^= 1; // one more white token, no moves to explain it
+        assertRejected(file);
+    }
+
+    @Test
+    public void rejectsBoardNotMatchingMoves() throws IOException {
+        byte[] file = write(randomGame(20, 3));
+        file[4 + GameFormat.HEADER_SIZE + 5] ^= 1;
+        assertRejected(file);
+    }
+
+    @Test
+    public void rejectsInconsistentFlags() throws IOException {
+        int[] bad = {GameFormat.FLAG_STARTED, GameFormat.FLAG_LOCKED,
+            GameFormat.FLAG_WHITES_TURN, GameFormat.FLAG_PASSED, 64};
+        byte[] file = write(randomGame(20, 4));
+        for (int flag : bad) {
+            byte[] copy = file.clone();
+            copy[4 + 17] ^= flag;
+            assertRejected(copy);
+        }
+    }
+
+    /**
+     * Build a game file from the starting position.
+     *
+     * @param whitesTurn true if white is to move
+     * @param flags flags besides FLAG_STARTED and FLAG_WHITES_TURN
+     * @param moves the move list
+     * @return the file
+     */
+    private static byte[] file(boolean whitesTurn, int flags, int... moves) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + GameFormat.HEADER_SIZE
+                + moves.length);
+        buffer.putInt(GameFormat.MAGIC);
+        buffer.put((byte) GameFormat.VERSION);
+        buffer.putLong(whitesTurn == (moves.length % 2 == 0)
+                ? Bitboard.START_WHITE : Bitboard.START_BLACK);
+        buffer.putLong(whitesTurn == (moves.length % 2 == 0)
+                ? Bitboard.START_BLACK : Bitboard.START_WHITE);
+        buffer.put((byte) (GameFormat.FLAG_STARTED | flags
+                | (whitesTurn ? GameFormat.FLAG_WHITES_TURN : 0)));
+        buffer.put((byte) moves.length);
+        for (int move : moves) {
+            buffer.put((byte) move);
+        }
+        return buffer.array();
+    }
+
+    @Test
+    public void rejectsIllegalPass() throws IOException {
+        read(file(true, 0)); // the starting position itself is fine
+        assertRejected(file(false, GameFormat.FLAG_PASSED, Model.PASS));
+        assertRejected(file(true, GameFormat.FLAG_PASSED, Model.PASS,
+                Model.PASS));
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        byte[] file = write(randomGame(20, 5));
+        byte[] copy = new byte[file.length - 1];
+        System.arraycopy(file, 0, copy, 0, copy.length);
+        assertRejected(copy);
+    }
+
+    @Test(expected = IOException.class)
+    public void writeRejectsWideBoard() throws IOException {
+        Model m = new Model();
+        m.newPvP(10);
+        write(m);
+    }
+
+    @Test
+    public void archiveRejectsWideBoard() throws IOException {
+        File f = File.createTempFile("reversi", ".archive");
+        f.deleteOnExit();
+        Model m = new Model();
+        m.newPvP(10);
+        try (GameArchive.Writer writer = new GameArchive.Writer(f)) {
+            writer.append(m);
+            fail("Wide board was archived");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package xyz.johansson.reversi.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests of ModelSnapshot: a snapshot keeps the state it was taken in while
+ * the Model moves on.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public class ModelSnapshotTest {
+
+    /**
+     * Play the first legal move of the player to move.
+     *
+     * @param m the Model
+     */
+    private static void playFirstMove(Model m) {
+        for (int square = 0; square < m.getSize() * m.getSize(); square++) {
+            if (m.setBoard(square / m.getSize(), square % m.getSize())) {
+                return;
+            }
+        }
+        throw new AssertionError("No legal move");
+    }
+
+    private static int[] cells(ModelSnapshot s) {
+        int[] cells = new int[s.getSize() * s.getSize()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = s.getBoard(i / s.getSize(), i % s.getSize());
+        }
+        return cells;
+    }
+
+    private static void assertMatches(Model m, ModelSnapshot s) {
+        assertEquals(m.getSize(), s.getSize());
+        for (int row = 0; row < m.getSize(); row++) {
+            for (int col = 0; col < m.getSize(); col++) {
+                assertEquals(m.getBoard(row, col), s.getBoard(row, col));
+            }
+        }
+        assertEquals(m.getWhitesTurn(), s.getWhitesTurn());
+        assertEquals(m.getMoveCount(), s.getMoveCount());
+        assertEquals(m.getWhitePoints(), s.getWhitePoints());
+        assertEquals(m.getBlackPoints(), s.getBlackPoints());
+        assertEquals(m.getLastMove(), s.getLastMove());
+        assertEquals(m.somebodyWon(), s.somebodyWon());
+    }
+
+    @Test
+    public void matchesModel() {
+        for (int size : new int[]{8, 10}) {
+            Model m = new Model();
+            m.newPvP(size);
+            for (int i = 0; i < 20; i++) {
+                assertMatches(m, m.getSnapshot());
+                playFirstMove(m);
+            }
+        }
+    }
+
+    @Test
+    public void unchangedWhenModelMovesOn() {
+        for (int size : new int[]{8, 10, 16}) {
+            Model m = new Model();
+            m.newPvP(size);
+            playFirstMove(m);
+            ModelSnapshot s = m.getSnapshot();
+            int[] before = cells(s);
+            long white = s.getWhite(), black = s.getBlack();
+            boolean whitesTurn = s.getWhitesTurn();
+            int moveCount = s.getMoveCount();
+            for (int i = 0; i < 10; i++) {
+                playFirstMove(m);
+            }
+            assertEquals(size * size, before.length);
+            int[] after = cells(s);
+            for (int i = 0; i < before.length; i++) {
+                assertEquals(before[i], after[i]);
+            }
+            assertEquals(white, s.getWhite());
+            assertEquals(black, s.getBlack());
+            assertEquals(whitesTurn, s.getWhitesTurn());
+            assertEquals(moveCount, s.getMoveCount());
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void getBoardOutsideClassicBoard() {
+        Model m = new Model();
+        m.newPvP();
+        m.getSnapshot().getBoard(0, Model.COLS);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void getBoardOutsideWideBoard() {
+        Model m = new Model();
+        m.newPvP(10);
+        m.getSnapshot().getBoard(10, 0);
+    }
+
+    @Test
+    public void gameOver() {
+        Model m = new Model();
+        m.newPvP();
+        assertFalse(m.getSnapshot().somebodyWon());
+        while (!m.somebodyWon()) {
+            playFirstMove(m);
+        }
+        ModelSnapshot s = m.getSnapshot();
+        assertTrue(s.somebodyWon());
+        assertTrue(s.getBoardLocked());
+        m.newPvP();
+        assertTrue(s.somebodyWon());
+    }
+}
@@ -0,0 +1,91 @@
+package xyz.johansson.reversi.model;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests of the move generation by perft: the leaf counts from the starting
+ * position match the reference values, for the bitboards of the classic board
+ * and for the multi-word bitsets of a Geometry of the same size.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public class PerftTest {
+
+    /**
+     * Deepest reference count checked, a fraction of a second to count.
+     */
+    private static final int MAX_DEPTH = 9;
+
+    /**
+     * Perft on the multi-word bitsets of a Geometry, as Perft.perft does on
+     * bitboards.
+     *
+     * @param g the Geometry
+     * @param own bitset of the player to move
+     * @param opp bitset of the opponent
+     * @param depth remaining depth
+     * @param passed true if the opponent passed to get here
+     * @return number of leaves
+     */
+    private static long perft(Geometry g, long[] own, long[] opp, int depth,
+            boolean passed) {
+        if (depth == 0) {
+            return 1;
+        }
+        long[] moves = new long[g.getWords()];
+        if (!g.moves(own, opp, moves, new long[g.getWords()])) {
+            return passed ? 1 : perft(g, opp, own, depth - 1, true);
+        }
+        long count = 0;
+        long[] flips = new long[g.getWords()];
+        for (int sq = Geometry.next(moves, 0); sq >= 0;
+                sq = Geometry.next(moves, sq + 1)) {
+            g.flips(own, opp, sq, flips);
+            long[] nextOwn = new long[g.getWords()];
+            long[] nextOpp = new long[g.getWords()];
+            for (int w = 0; w < flips.length; w++) {
+                nextOwn[w] = opp[w] & ~flips[w];
+                nextOpp[w] = own[w] | flips[w];
+            }
+            Geometry.set(nextOpp, sq);
+            count += perft(g, nextOwn, nextOpp, depth - 1, false);
+        }
+        return count;
+    }
+
+    @Test
+    public void startCounts() {
+        for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+            assertEquals("depth " + depth, Perft.START_COUNTS[depth],
+                    Perft.perft(Bitboard.START_WHITE, Bitboard.START_BLACK,
+                            depth, false));
+        }
+    }
+
+    @Test
+    public void startCountsOnGeometry() {
+        Geometry g = Geometry.of(Model.ROWS);
+        long[] white = new long[g.getWords()];
+        long[] black = new long[g.getWords()];
+        g.start(white, black);
+        assertEquals(Bitboard.START_WHITE, white[0]);
+        assertEquals(Bitboard.START_BLACK, black[0]);
+        for (int depth = 0; depth <= 7; depth++) {
+            assertEquals("depth " + depth, Perft.START_COUNTS[depth],
+                    perft(g, white, black, depth, false));
+        }
+    }
+
+    @Test
+    public void passCountsAsMove() {
+        // White has no move; black takes the last empty cell
+        long white = 1L << 1;
+        long black = ~(1L << 1 | 1L);
+        assertEquals(0, Bitboard.moves(white, black));
+        assertEquals(1, Perft.perft(white, black, 1, false));
+        assertEquals(1, Perft.perft(white, black, 2, false));
+        assertEquals(1, Perft.perft(white, black, 5, false));
+    }
+}
@@ -0,0 +1,138 @@
+package xyz.johansson.reversi.view;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests of the Animator: the shared Timer runs while a highlight is fading
+ * out and stops when the last one is done. Each test runs on the event
+ * dispatch thread, so that no real tick comes in between.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public class AnimatorTest {
+
+    /**
+     * A cell recording its highlight colors.
+     */
+    private static final class Cell implements Animator.Target {
+
+        private long highlightStart = -1;
+        private final List<Color> colors = new ArrayList<>();
+
+        @Override
+        public long getHighlightStart() {
+            return highlightStart;
+        }
+
+        @Override
+        public void setHighlightStart(long millis) {
+            highlightStart = millis;
+        }
+
+        @Override
+        public void setHighlight(Color background) {
+            colors.add(background);
+        }
+
+        /**
+         * Let the highlight have started a while ago.
+         *
+         * @param millis time since the start
+         */
+        void age(long millis) {
+            highlightStart = System.currentTimeMillis() - millis;
+        }
+    }
+
+    private static void onEventDispatchThread(Runnable r) throws Exception {
+        SwingUtilities.invokeAndWait(r);
+    }
+
+    @Test
+    public void timerRunsWhileFading() throws Exception {
+        onEventDispatchThread(new Runnable() {
+            @Override
+            public void run() {
+                Animator animator = new Animator();
+                Cell cell = new Cell();
+                assertFalse(animator.isRunning());
+                animator.highlight(cell);
+                assertTrue(animator.isRunning());
+                assertTrue(cell.getHighlightStart() >= 0);
+
+                // Half way the highlight is still fading
+                cell.age(Animator.HIGHLIGHT_TIME / 2);
+                animator.actionPerformed(null);
+                assertTrue(animator.isRunning());
+
+                // Done; the Timer stops and the background is restored
+                cell.age(Animator.HIGHLIGHT_TIME);
+                animator.actionPerformed(null);
+                assertFalse(animator.isRunning());
+                assertEquals(-1, cell.getHighlightStart());
+                assertEquals(View.BACKGROUND_COLOR,
+                        cell.colors.get(cell.colors.size() - 1));
+            }
+        });
+    }
+
+    @Test
+    public void oneTimerForAllCells() throws Exception {
+        onEventDispatchThread(new Runnable() {
+            @Override
+            public void run() {
+                Animator animator = new Animator();
+                Cell first = new Cell(), second = new Cell();
+                animator.highlight(first);
+                animator.highlight(second);
+                assertTrue(animator.isRunning());
+
+                // The Timer keeps running until the last cell is done
+                first.age(Animator.HIGHLIGHT_TIME);
+                animator.actionPerformed(null);
+                assertEquals(-1, first.getHighlightStart());
+                assertTrue(animator.isRunning());
+                second.age(Animator.HIGHLIGHT_TIME);
+                animator.actionPerformed(null);
+                assertFalse(animator.isRunning());
+
+                // and starts again with the next highlight
+                animator.highlight(first);
+                assertTrue(animator.isRunning());
+                first.age(Animator.HIGHLIGHT_TIME);
+                animator.actionPerformed(null);
+                assertFalse(animator.isRunning());
+            }
+        });
+    }
+
+    @Test
+    public void highlightAgainRestarts() throws Exception {
+        onEventDispatchThread(new Runnable() {
+            @Override
+            public void run() {
+                Animator animator = new Animator();
+                Cell cell = new Cell();
+                animator.highlight(cell);
+                cell.age(Animator.HIGHLIGHT_TIME / 2);
+                animator.highlight(cell);
+                animator.actionPerformed(null);
+                assertTrue(animator.isRunning());
+                assertTrue(cell.getHighlightStart() >= 0);
+
+                // The cell is active once, so one tick finishes it
+                cell.age(Animator.HIGHLIGHT_TIME);
+                animator.actionPerformed(null);
+                assertFalse(animator.isRunning());
+            }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package xyz.johansson.reversi.view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import xyz.johansson.reversi.model.Model;
+
+/**
+ * Tests of the BoardCanvas: points map to their cells, the margin is painted,
+ * and a changed cell repaints its own rectangle only.
+ *
+ * @author Tobias Johansson
+ * @version 1.03, 3 Mar 2015
+ */
+public class BoardCanvasTest {
+
+    private static final ActionListener IGNORE = new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+        }
+    };
+
+    /**
+     * A BoardCanvas recording its repaint requests.
+     */
+    private static final class RecordingCanvas extends BoardCanvas {
+
+        private final List<Rectangle> repaints = new ArrayList<>();
+
+        RecordingCanvas(int size) {
+            super(size, new Animator(), IGNORE);
+        }
+
+        @Override
+        public void repaint(long tm, int x, int y, int width, int height) {
+            repaints.add(new Rectangle(x, y, width, height));
+        }
+    }
+
+    @Test
+    public void squareAtClassicBoard() {
+        BoardCanvas canvas = new BoardCanvas(8, new Animator(), IGNORE);
+        canvas.setSize(480, 480);
+        assertEquals(0, canvas.squareAt(0, 0));
+        assertEquals(0, canvas.squareAt(59, 59));
+        assertEquals(1, canvas.squareAt(60, 0));
+        assertEquals(8, canvas.squareAt(0, 60));
+        assertEquals(63, canvas.squareAt(479, 479));
+        assertEquals(3 * 8 + 5, canvas.squareAt(5 * 60 + 30, 3 * 60 + 30));
+    }
+
+    @Test
+    public void squareAtOutside() {
+        BoardCanvas canvas = new BoardCanvas(8, new Animator(), IGNORE);
+        canvas.setSize(485, 487); // a margin right of and below the cells
+        assertEquals(-1, canvas.squareAt(-1, 0));
+        assertEquals(-1, canvas.squareAt(0, -1));
+        assertEquals(-1, canvas.squareAt(482, 10));
+        assertEquals(-1, canvas.squareAt(10, 484));
+        assertEquals(63, canvas.squareAt(479, 479));
+        canvas.setSize(0, 0);
+        assertEquals(-1, canvas.squareAt(0, 0));
+    }
+
+    @Test
+    public void paintFillsTheMargin() {
+        BoardCanvas canvas = new BoardCanvas(8, new Animator(), IGNORE);
+        canvas.setSize(485, 487); // a margin right of and below the cells
+        BufferedImage image = new BufferedImage(485, 487,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.red); // stale pixels
+        g.fillRect(0, 0, 485, 487);
+        canvas.paintComponent(g);
+        g.dispose();
+        int background = View.BACKGROUND_COLOR.getRGB();
+        assertEquals(background, image.getRGB(482, 10));
+        assertEquals(background, image.getRGB(10, 484));
+        assertEquals(background, image.getRGB(484, 486));
+    }
+
+    @Test
+    public void squareAtWideBoard() {
+        BoardCanvas canvas = new BoardCanvas(12, new Animator(), IGNORE);
+        canvas.setSize(480, 360); // 40 x 30 pixel cells
+        for (int square = 0; square < 144; square++) {
+            int x = square % 12 * 40, y = square / 12 * 30;
+            assertEquals(square, canvas.squareAt(x, y));
+            assertEquals(square, canvas.squareAt(x + 39, y + 29));
+        }
+    }
+
+    @Test
+    public void changedCellRepaintsItsRectangle() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                for (int size : new int[]{8, 10}) {
+                    RecordingCanvas canvas = new RecordingCanvas(size);
+                    canvas.setSize(size * 50, size * 40);
+                    for (int square = 0; square < size * size; square++) {
+                        int row = square / size, col = square % size;
+                        canvas.repaints.clear();
+                        canvas.setColor(row, col, Model.WHITE);
+                        canvas.setColor(row, col, Model.EMPTY);
+                        Rectangle cell = new Rectangle(col * 50, row * 40, 50,
+                                40);
+                        assertEquals(2, canvas.repaints.size());
+                        for (Rectangle r : canvas.repaints) {
+                            assertEquals(cell, r);
+                            assertEquals(square,
+                                    canvas.squareAt(r.x, r.y));
+                            assertEquals(square, canvas.squareAt(
+                                    r.x + r.width - 1, r.y + r.height - 1));
+                        }
+                    }
+                }
+            }
+        });
+    }
+}